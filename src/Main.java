@@ -1,8 +1,26 @@
 // === Application Entry Point ===
 import gui.MainWindow;
+import java.util.Arrays;
+import service.BatchCoordinator;
+import service.BatchWorker;
+import service.DerivativeExport;
+import service.RegressionHarness;
+import service.WatchFolderService;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            String[] rest = Arrays.copyOfRange(args, 1, args.length);
+            switch (args[0]) {
+                case "--watch" -> { WatchFolderService.main(rest); return; }
+                case "--batch" -> { BatchCoordinator.main(rest); return; }
+                case "--batch-worker" -> { BatchWorker.main(rest); return; }
+                case "--derivatives" -> { DerivativeExport.main(rest); return; }
+                case "--regress" -> { RegressionHarness.main(rest); return; }
+                case "--train" -> { MainWindow.train(); return; }
+                default -> { }
+            }
+        }
         MainWindow.launch();
     }
 }
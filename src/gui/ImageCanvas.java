@@ -18,6 +18,9 @@ final class ImageCanvas extends JComponent {
     private boolean cropping = false;
     private Rectangle cropRect;
     private Point cropStart;
+    private boolean selecting = false;
+    private Rectangle selection; // image coordinates
+    private Dimension selectionImageSize;
 
     ImageCanvas(ImageProcessor doc) {
         this.doc = doc;
@@ -39,7 +42,7 @@ final class ImageCanvas extends JComponent {
         var mouse = new MouseAdapter() {
             @Override
             public void mousePressed(MouseEvent e) {
-                if (cropping) {
+                if (cropping || selecting) {
                     cropStart = e.getPoint();
                     cropRect = new Rectangle(cropStart);
                 } else {
@@ -49,21 +52,31 @@ final class ImageCanvas extends JComponent {
 
             @Override
             public void mouseDragged(MouseEvent e) {
-                if (cropping && cropStart != null) {
+                if ((cropping || selecting) && cropStart != null) {
                     int x = Math.min(cropStart.x, e.getX());
                     int y = Math.min(cropStart.y, e.getY());
                     int w = Math.abs(e.getX() - cropStart.x);
                     int h = Math.abs(e.getY() - cropStart.y);
                     cropRect = new Rectangle(x, y, w, h);
                     repaint();
-                } else if (!cropping && dragStart != null) {
+                } else if (!cropping && !selecting && dragStart != null) {
                     offsetX += e.getX() - dragStart.x;
                     offsetY += e.getY() - dragStart.y;
                     dragStart = e.getPoint();
                     repaint();
                 }
             }
-            @Override public void mouseReleased(MouseEvent e) { dragStart = null; }
+            @Override public void mouseReleased(MouseEvent e) {
+                dragStart = null;
+                if (selecting && cropRect != null && cropRect.width > 2 && cropRect.height > 2) {
+                    selecting = false;
+                    selection = toImageRect(cropRect);
+                    BufferedImage img = doc.getImage();
+                    selectionImageSize = img == null ? null : new Dimension(img.getWidth(), img.getHeight());
+                    cropRect = null;
+                    repaint();
+                }
+            }
             @Override public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) { resetZoom(); repaint(); }
             }
@@ -93,7 +106,16 @@ final class ImageCanvas extends JComponent {
             at.scale(zoom, zoom);
             g2.drawRenderedImage(img, at);
         }
-        if (cropping && cropRect != null) {
+        if (selection != null && !selecting) {
+            Rectangle r = toViewRect(selection);
+            g2.setColor(Color.WHITE);
+            g2.setStroke(new BasicStroke(1));
+            g2.draw(r);
+            g2.setColor(Color.BLACK);
+            g2.setStroke(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER, 10f, new float[]{4f, 4f}, 0f));
+            g2.draw(r);
+        }
+        if ((cropping || selecting) && cropRect != null) {
             g2.setColor(new Color(0, 120, 215, 80));
             g2.fill(cropRect);
             g2.setColor(Color.BLUE);
@@ -143,7 +165,44 @@ final class ImageCanvas extends JComponent {
         return new Point(x, y);
     }
 
+    Rectangle toImageRect(Rectangle viewRect) {
+        Point p1 = toImagePoint(new Point(viewRect.x, viewRect.y));
+        Point p2 = toImagePoint(new Point(viewRect.x + viewRect.width, viewRect.y + viewRect.height));
+        return new Rectangle(Math.min(p1.x, p2.x), Math.min(p1.y, p2.y), Math.abs(p2.x - p1.x), Math.abs(p2.y - p1.y));
+    }
+
+    Rectangle toViewRect(Rectangle imageRect) {
+        int x = (int) Math.round(imageRect.x * zoom) + offsetX;
+        int y = (int) Math.round(imageRect.y * zoom) + offsetY;
+        return new Rectangle(x, y, (int) Math.round(imageRect.width * zoom), (int) Math.round(imageRect.height * zoom));
+    }
+
+    void enableSelectMode() {
+        selecting = true;
+        cropping = false;
+        cropRect = null;
+        repaint();
+    }
+
+    Rectangle getSelection() { return selection; }
+
+    void clearSelection() {
+        selecting = false;
+        selection = null;
+        repaint();
+    }
+
+    // A selection belongs to the image size it was drawn on. Rotating, resizing, cropping or undoing across
+    // any of those drops it instead of leaving it over different pixels.
+    void dropSelectionIfResized() {
+        if (selection == null) return;
+        BufferedImage img = doc.getImage();
+        if (img == null || selectionImageSize == null || img.getWidth() != selectionImageSize.width
+                || img.getHeight() != selectionImageSize.height) clearSelection();
+    }
+
     void enableCropMode() {
+        selecting = false;
         cropping = true;
         cropRect = null;
         repaint();
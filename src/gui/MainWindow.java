@@ -10,38 +10,56 @@ import java.awt.dnd.DropTargetDropEvent;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 import javax.swing.*;
+import javax.swing.event.MenuEvent;
+import javax.swing.event.MenuListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import processing.ImageProcessor;
+import processing.ImageStats;
+import processing.MemoryGovernor;
 import processing.Operations;
+import processing.Resampler;
 import util.ImageIOUtils;
+import util.JpegEncoder;
 
 public final class MainWindow {
 
     // === Core State ===
+    private record Tab(ImageProcessor document, ImageCanvas canvas) {}
+
     private JFrame frame;
-    private final ImageProcessor document = new ImageProcessor();
-    private final ImageCanvas canvas = new ImageCanvas(document);
+    private final JTabbedPane tabs = new JTabbedPane();
+    private final List<Tab> openTabs = new ArrayList<>();
 
     // === UI: Status ===
     private final JLabel statusLeft = new JLabel("—");
     private final JLabel statusCenter = new JLabel("—");
     private final JLabel statusRight = new JLabel("—");
     private final JProgressBar progressBar = new JProgressBar();
+    private boolean busy;                       // a document edit is running on a worker
 
     // === UI: Controls ===
-    private final JFileChooser chooser = new JFileChooser();
+    private JFileChooser chooser;               // built on first use; it is slow to construct
     private final JComboBox<String> filterBox = new JComboBox<>(Operations.builtInNames());
 
     private final JSlider brightness = new JSlider(-100, 100, 0);
     private final JSlider contrast   = new JSlider(-100, 100, 0);
     private final JSlider blurRadius = new JSlider(0, 8, 0);
     private final JButton applyBtn   = new JButton("Apply");
-    private final JButton undoBtn    = new JButton("Undo");
-    private final JButton redoBtn    = new JButton("Redo");
+    private final JButton undoBtn;
+    private final JButton redoBtn;
 
     // === Actions ===
+    private final Action undoAction = new AbstractAction("Undo") {
+        @Override public void actionPerformed(ActionEvent e) { runEdit(ImageProcessor::undo); }
+    };
+    private final Action redoAction = new AbstractAction("Redo") {
+        @Override public void actionPerformed(ActionEvent e) { runEdit(ImageProcessor::redo); }
+    };
     private final Action openAction   = new AbstractAction("Open…") {
         @Override public void actionPerformed(ActionEvent e) { doOpen(); }
     };
@@ -52,7 +70,13 @@ public final class MainWindow {
         @Override public void actionPerformed(ActionEvent e) { doExportJpeg(); }
     };
     private final Action resetAction  = new AbstractAction("Revert") {
-        @Override public void actionPerformed(ActionEvent e) { document.revert(); refreshUI(); }
+        @Override public void actionPerformed(ActionEvent e) { runEdit(ImageProcessor::revert); }
+    };
+    private final Action newTabAction = new AbstractAction("New Tab") {
+        @Override public void actionPerformed(ActionEvent e) { addTab(); }
+    };
+    private final Action closeTabAction = new AbstractAction("Close Tab") {
+        @Override public void actionPerformed(ActionEvent e) { closeTab(tabs.getSelectedIndex()); }
     };
     private final Action quitAction   = new AbstractAction("Quit") {
         @Override public void actionPerformed(ActionEvent e) { frame.dispose(); }
@@ -69,27 +93,38 @@ public final class MainWindow {
     private final Action flipVAction = new AbstractAction("Flip V") {
         @Override public void actionPerformed(ActionEvent e) { runAsync(Operations::flipV); }
     };
+    private final Action resizeAction = new AbstractAction("Resize…") {
+        @Override public void actionPerformed(ActionEvent e) { doResize(); }
+    };
     private final Action zoomInAction = new AbstractAction("Zoom In") {
-        @Override public void actionPerformed(ActionEvent e) { canvas.zoomStep(+1); updateStatus(); }
+        @Override public void actionPerformed(ActionEvent e) { canvas().zoomStep(+1); updateStatus(); }
     };
     private final Action zoomOutAction = new AbstractAction("Zoom Out") {
-        @Override public void actionPerformed(ActionEvent e) { canvas.zoomStep(-1); updateStatus(); }
+        @Override public void actionPerformed(ActionEvent e) { canvas().zoomStep(-1); updateStatus(); }
     };
     private final Action resetZoomAction = new AbstractAction("Actual Size") {
-        @Override public void actionPerformed(ActionEvent e) { canvas.resetZoom(); updateStatus(); }
+        @Override public void actionPerformed(ActionEvent e) { canvas().resetZoom(); updateStatus(); }
+    };
+
+    private final Action selectAction = new AbstractAction("Select Region") {
+        @Override public void actionPerformed(ActionEvent e) { canvas().enableSelectMode(); }
+    };
+
+    private final Action clearSelectionAction = new AbstractAction("Clear Selection") {
+        @Override public void actionPerformed(ActionEvent e) { canvas().clearSelection(); }
     };
 
     private final Action cropModeAction = new AbstractAction("Crop Image") {
-        @Override public void actionPerformed(ActionEvent e) { canvas.enableCropMode(); }
+        @Override public void actionPerformed(ActionEvent e) { canvas().enableCropMode(); }
     };
 
     private final Action applyCropAction = new AbstractAction("Apply Crop") {
         @Override public void actionPerformed(ActionEvent e) {
-            Rectangle rectView = canvas.finishCrop();
+            Rectangle rectView = canvas().finishCrop();
             if (rectView != null && rectView.width > 5 && rectView.height > 5) {
                 // convert canvas rect → image coordinates
-                Point p1 = canvas.toImagePoint(new Point(rectView.x, rectView.y));
-                Point p2 = canvas.toImagePoint(new Point(rectView.x + rectView.width, rectView.y + rectView.height));
+                Point p1 = canvas().toImagePoint(new Point(rectView.x, rectView.y));
+                Point p2 = canvas().toImagePoint(new Point(rectView.x + rectView.width, rectView.y + rectView.height));
 
                 int x = Math.max(0, Math.min(p1.x, p2.x));
                 int y = Math.max(0, Math.min(p1.y, p2.y));
@@ -98,24 +133,44 @@ public final class MainWindow {
 
                 Rectangle rectImage = new Rectangle(x, y, w, h);
 
+                canvas().clearSelection();
                 runAsync(() -> Operations.crop(rectImage));
             }
         }
     };
 
+    // Menus are filled the first time they open; the training run fills them all up front.
+    private final List<Runnable> deferredMenus = new ArrayList<>();
+
     // === Bootstrap ===
     public static void launch() {
-        try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); } catch (Exception ignored) {}
+        Startup.preloadInBackground();
+        installLookAndFeel();
         SwingUtilities.invokeLater(() -> new MainWindow().show());
     }
 
-    private MainWindow() {
-        chooser.setAcceptAllFileFilterUsed(false);
-        chooser.addChoosableFileFilter(new FileNameExtensionFilter("Image Files (PNG/JPG/JPEG)", "png", "jpg", "jpeg"));
+    static void installLookAndFeel() {
+        try { UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName()); } catch (Exception ignored) {}
+    }
+
+    // Loads the classes a normal session needs and exits; see Startup.train.
+    public static void train() throws Exception {
+        Startup.train();
+    }
+
+    MainWindow() {
+        undoBtn = new JButton(undoAction);
+        redoBtn = new JButton(redoAction);
         initUI();
         bindShortcuts();
     }
 
+    void dispose() { frame.dispose(); }
+
+    void buildDeferredMenus() {
+        for (Runnable fill : List.copyOf(deferredMenus)) fill.run();
+    }
+
     // === UI Construction ===
     private void initUI() {
         frame = new JFrame("Image Studio");
@@ -125,29 +180,48 @@ public final class MainWindow {
         frame.setJMenuBar(buildMenuBar());
         var toolbar = buildToolbar();
 
-        var scroll = new JScrollPane(canvas);
-        scroll.getVerticalScrollBar().setUnitIncrement(16);
-        scroll.getHorizontalScrollBar().setUnitIncrement(16);
+        tabs.addChangeListener(_ -> onTabChanged());
+        addTab();
 
         var status = buildStatusBar();
 
         var content = new JPanel(new BorderLayout(0, 0));
         content.add(toolbar, BorderLayout.NORTH);
-        content.add(scroll, BorderLayout.CENTER);
+        content.add(tabs, BorderLayout.CENTER);
         content.add(status, BorderLayout.SOUTH);
 
         frame.setContentPane(content);
 
-        DropTarget dt = new DropTarget(canvas, new DropTargetAdapter() {
+        filterBox.setSelectedItem("Grayscale");
+        applyBtn.addActionListener(_ -> applyControls());
+
+        frame.addWindowListener(new WindowAdapter() {
+            @Override public void windowOpened(WindowEvent e) { Startup.frameShown(); }
+        });
+        frame.pack();
+    }
+
+    // === Documents ===
+    private Tab activeTab() { return openTabs.get(Math.max(0, tabs.getSelectedIndex())); }
+    private ImageProcessor document() { return activeTab().document(); }
+    private ImageCanvas canvas() { return activeTab().canvas(); }
+
+    private Tab addTab() {
+        var document = new ImageProcessor();
+        var canvas = new ImageCanvas(document);
+        var scroll = new JScrollPane(canvas);
+        scroll.getVerticalScrollBar().setUnitIncrement(16);
+        scroll.getHorizontalScrollBar().setUnitIncrement(16);
+
+        new DropTarget(canvas, new DropTargetAdapter() {
             @Override
             public void drop(DropTargetDropEvent dtde) {
                 try {
                     dtde.acceptDrop(DnDConstants.ACTION_COPY);
                     Object transfer = dtde.getTransferable().getTransferData(DataFlavor.javaFileListFlavor);
 
-                    if (transfer instanceof java.util.List<?> list && !list.isEmpty()) {
-                        File f = (File) list.get(0);
-                        openFile(f);
+                    if (transfer instanceof List<?> list) {
+                        for (Object f : list) openFile((File) f);
                     }
                 } catch (Exception ignored) {}
             }
@@ -158,48 +232,91 @@ public final class MainWindow {
             @Override public void mouseDragged(MouseEvent e) { updateStatus(e); }
         });
 
-        filterBox.setSelectedItem("Grayscale");
-        applyBtn.addActionListener(_ -> applyControls());
-        undoBtn.addActionListener(_ -> { document.undo(); refreshUI(); });
-        redoBtn.addActionListener(_ -> { document.redo(); refreshUI(); });
+        var tab = new Tab(document, canvas);
+        openTabs.add(tab);
+        tabs.addTab("Untitled", scroll);
+        tabs.setSelectedIndex(openTabs.size() - 1);
+        return tab;
+    }
 
-        frame.pack();
+    private void closeTab(int index) {
+        if (index < 0) return;
+        var tab = openTabs.remove(index);
+        tabs.removeTabAt(index);
+        tab.document().dispose();
+        if (openTabs.isEmpty()) addTab();
+        refreshUI();
+    }
+
+    // Only the selected document keeps its working image pinned in memory.
+    private void onTabChanged() {
+        int selected = tabs.getSelectedIndex();
+        if (openTabs.isEmpty()) return;
+        for (int i = 0; i < openTabs.size(); i++) openTabs.get(i).document().setActive(i == selected);
+        if (frame != null && selected >= 0) refreshUI();
     }
 
     private JMenuBar buildMenuBar() {
         var mb = new JMenuBar();
 
-        var file = new JMenu("File");
-        file.add(openAction);
-        file.add(saveAsAction);
-        file.add(exportJpgAction);
-        file.addSeparator();
-        file.add(resetAction);
-        file.addSeparator();
-        file.add(quitAction);
-
-        var edit = new JMenu("Edit");
-        edit.add(undoBtn);
-        edit.add(redoBtn);
-
-        var view = new JMenu("View");
-        view.add(zoomInAction);
-        view.add(zoomOutAction);
-        view.add(resetZoomAction);
-
-        var image = new JMenu("Image");
-        image.add(rotateLeftAction);
-        image.add(rotateRightAction);
-        image.add(flipHAction);
-        image.add(flipVAction);
-        image.addSeparator();
-        image.add(cropModeAction);
-        image.add(applyCropAction);
-
-        mb.add(file); mb.add(edit); mb.add(view); mb.add(image);
+        mb.add(deferredMenu("File", file -> {
+            file.add(openAction);
+            file.add(saveAsAction);
+            file.add(exportJpgAction);
+            file.add(newTabAction);
+            file.add(closeTabAction);
+            file.addSeparator();
+            file.add(resetAction);
+            file.addSeparator();
+            file.add(quitAction);
+        }));
+
+        mb.add(deferredMenu("Edit", edit -> {
+            edit.add(undoAction);
+            edit.add(redoAction);
+        }));
+
+        mb.add(deferredMenu("View", view -> {
+            view.add(zoomInAction);
+            view.add(zoomOutAction);
+            view.add(resetZoomAction);
+        }));
+
+        mb.add(deferredMenu("Image", image -> {
+            image.add(rotateLeftAction);
+            image.add(rotateRightAction);
+            image.add(flipHAction);
+            image.add(flipVAction);
+            image.add(resizeAction);
+            image.addSeparator();
+            image.add(selectAction);
+            image.add(clearSelectionAction);
+            image.addSeparator();
+            image.add(cropModeAction);
+            image.add(applyCropAction);
+        }));
+
         return mb;
     }
 
+    // A menu whose items are created when it is first opened.
+    private JMenu deferredMenu(String title, Consumer<JMenu> fill) {
+        var menu = new JMenu(title);
+        Runnable build = new Runnable() {
+            @Override public void run() {
+                if (!deferredMenus.remove(this)) return;
+                fill.accept(menu);
+            }
+        };
+        deferredMenus.add(build);
+        menu.addMenuListener(new MenuListener() {
+            @Override public void menuSelected(MenuEvent e) { build.run(); }
+            @Override public void menuDeselected(MenuEvent e) {}
+            @Override public void menuCanceled(MenuEvent e) {}
+        });
+        return menu;
+    }
+
     private JToolBar buildToolbar() {
         var tb = new JToolBar();
         tb.setFloatable(false);
@@ -269,11 +386,17 @@ public final class MainWindow {
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_E, meta()), "exportJpg");
         am.put("exportJpg", exportJpgAction);
 
+        im.put(KeyStroke.getKeyStroke(KeyEvent.VK_T, meta()), "newTab");
+        am.put("newTab", newTabAction);
+
+        im.put(KeyStroke.getKeyStroke(KeyEvent.VK_W, meta()), "closeTab");
+        am.put("closeTab", closeTabAction);
+
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, meta()), "undo");
-        am.put("undo", undoBtn.getAction());
+        am.put("undo", undoAction);
 
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, meta()), "redo");
-        am.put("redo", redoBtn.getAction());
+        am.put("redo", redoAction);
 
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_PLUS, meta()), "zoomIn");
         im.put(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, meta()), "zoomIn2");
@@ -291,9 +414,18 @@ public final class MainWindow {
     }
 
     // === Open / Save ===
+    private JFileChooser chooser() {
+        if (chooser == null) {
+            chooser = new JFileChooser();
+            chooser.setAcceptAllFileFilterUsed(false);
+            chooser.addChoosableFileFilter(new FileNameExtensionFilter("Image Files (PNG/JPG/JPEG)", "png", "jpg", "jpeg"));
+        }
+        return chooser;
+    }
+
     private void doOpen() {
-        if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
-            openFile(chooser.getSelectedFile());
+        if (chooser().showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+            openFile(chooser().getSelectedFile());
         }
     }
 
@@ -303,42 +435,97 @@ public final class MainWindow {
             JOptionPane.showMessageDialog(frame, "Could not open image.", "Open", JOptionPane.ERROR_MESSAGE);
             return;
         }
-        document.load(loaded.get(), file);
-        canvas.resetViewFor(document.getImage());
+        var tab = activeTab().document().getImage() == null ? activeTab() : addTab();
+        tab.document().load(loaded.get(), file);
+        tab.canvas().clearSelection();
+        tab.canvas().resetViewFor(tab.document().getImage());
         refreshUI();
     }
 
     private void doSaveAs() {
         if (!ensureImage()) return;
-        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
-        var file = chooser.getSelectedFile();
-        var ok = ImageIOUtils.writeAuto(document.getImage(), file);
+        if (chooser().showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+        var file = chooser().getSelectedFile();
+        var image = document().snapshot();
+        boolean ok;
+        try { ok = ImageIOUtils.writeAuto(image, file); } finally { image.release(); }
         if (!ok) JOptionPane.showMessageDialog(frame, "Save failed.", "Save As", JOptionPane.ERROR_MESSAGE);
     }
 
     private void doExportJpeg() {
         if (!ensureImage()) return;
 
-        var quality = askJpegQuality();
-        if (quality.isEmpty()) return;
+        var options = askJpegOptions();
+        if (options.isEmpty()) return;
 
-        if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
-        var file = chooser.getSelectedFile();
-        var ok = ImageIOUtils.writeJpeg(document.getImage(), file, quality.get());
-        if (!ok) JOptionPane.showMessageDialog(frame, "Export failed.", "Export JPEG", JOptionPane.ERROR_MESSAGE);
+        if (chooser().showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) return;
+        var file = chooser().getSelectedFile();
+        var image = document().snapshot();
+        progressBar.setIndeterminate(true);
+        progressBar.setVisible(true);
+
+        // A size or similarity target runs several encodes, so it stays off the event thread.
+        new SwingWorker<Optional<JpegEncoder.Result>, Void>() {
+            @Override protected Optional<JpegEncoder.Result> doInBackground() {
+                try { return ImageIOUtils.writeJpeg(image, file, options.get()); } finally { image.release(); }
+            }
+            @Override protected void done() {
+                progressBar.setIndeterminate(false);
+                progressBar.setVisible(false);
+                Optional<JpegEncoder.Result> result;
+                try { result = get(); } catch (Exception e) { result = Optional.empty(); }
+                if (result.isEmpty()) {
+                    JOptionPane.showMessageDialog(frame, "Export failed.", "Export JPEG", JOptionPane.ERROR_MESSAGE);
+                    return;
+                }
+                var r = result.get();
+                statusLeft.setText(String.format("Exported %d KB at quality %.2f%s (%d encodes, %d ms)",
+                        (r.bytes().length + 1023) / 1024, r.quality(), r.met() ? "" : ", target not reached",
+                        r.encodes(), r.millis()));
+            }
+        }.execute();
     }
 
-    private Optional<Float> askJpegQuality() {
-        var s = (String) JOptionPane.showInputDialog(
-                frame, "JPEG Quality (0.1 - 1.0)", "Export JPEG",
-                JOptionPane.QUESTION_MESSAGE, null, null, "0.92");
+    private Optional<JpegEncoder.Options> askJpegOptions() {
+        var mode = new JComboBox<>(new String[]{"Quality (0.1 - 1.0)", "Target size (KB)", "Target similarity (SSIM 0 - 1)"});
+        var value = new JTextField("0.92", 10);
+        var subsampling = new JComboBox<>(JpegEncoder.Subsampling.values());
+        subsampling.setSelectedItem(JpegEncoder.Subsampling.YUV420);
+        var progressive = new JCheckBox("Progressive");
+        mode.addActionListener(_ -> value.setText(switch (mode.getSelectedIndex()) {
+            case 1 -> "250";
+            case 2 -> "0.95";
+            default -> "0.92";
+        }));
+
+        var panel = new JPanel(new GridLayout(4, 2, 6, 6));
+        panel.add(mode);
+        panel.add(value);
+        panel.add(new JLabel("Chroma subsampling"));
+        panel.add(subsampling);
+        panel.add(progressive);
+        if (JOptionPane.showConfirmDialog(frame, panel, "Export JPEG", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) return Optional.empty();
         try {
-            if (s == null) return Optional.empty();
-            float v = Float.parseFloat(s);
-            if (v < 0.1f || v > 1.0f) throw new IllegalArgumentException();
-            return Optional.of(v);
+            double v = Double.parseDouble(value.getText().trim());
+            JpegEncoder.Target target = switch (mode.getSelectedIndex()) {
+                case 1 -> {
+                    if (v < 1) throw new IllegalArgumentException();
+                    yield new JpegEncoder.MaxBytes((long) (v * 1024));
+                }
+                case 2 -> {
+                    if (v <= 0 || v > 1) throw new IllegalArgumentException();
+                    yield new JpegEncoder.MinSimilarity(v);
+                }
+                default -> {
+                    if (v < 0.1 || v > 1.0) throw new IllegalArgumentException();
+                    yield new JpegEncoder.Quality((float) v);
+                }
+            };
+            return Optional.of(new JpegEncoder.Options(target, (JpegEncoder.Subsampling) subsampling.getSelectedItem(),
+                    progressive.isSelected()));
         } catch (Exception ex) {
-            JOptionPane.showMessageDialog(frame, "Invalid quality.", "Export JPEG", JOptionPane.WARNING_MESSAGE);
+            JOptionPane.showMessageDialog(frame, "Invalid value.", "Export JPEG", JOptionPane.WARNING_MESSAGE);
             return Optional.empty();
         }
     }
@@ -357,53 +544,138 @@ public final class MainWindow {
                 Operations.brightness(b / 100f),
                 Operations.contrast((c) / 100f),
                 r > 0 ? Operations.gaussianBlur(r) : Operations.none()
-        ));
+        ), canvas().getSelection());
+    }
+
+    private void doResize() {
+        if (!ensureImage()) return;
+        var img = document().getImage();
+        var size = new JTextField("50%", 12);
+        var filter = new JComboBox<>(Resampler.Filter.values());
+        filter.setSelectedItem(Resampler.Filter.LANCZOS3);
+
+        var panel = new JPanel(new GridLayout(2, 2, 6, 6));
+        panel.add(new JLabel("Size (50% or 1920x1080)"));
+        panel.add(size);
+        panel.add(new JLabel("Filter"));
+        panel.add(filter);
+        if (JOptionPane.showConfirmDialog(frame, panel, "Resize", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) return;
+
+        var dims = parseSize(size.getText().trim(), img.getWidth(), img.getHeight());
+        if (dims.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "Invalid size.", "Resize", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        var d = dims.get();
+        var f = (Resampler.Filter) filter.getSelectedItem();
+        canvas().clearSelection();
+        runAsync(() -> Operations.resize(d.width, d.height, f));
+    }
+
+    // Accepts "50%", "1920x1080" or a bare width that keeps the aspect ratio.
+    private static Optional<Dimension> parseSize(String s, int w, int h) {
+        try {
+            int nw, nh;
+            if (s.endsWith("%")) {
+                double pct = Double.parseDouble(s.substring(0, s.length() - 1)) / 100.0;
+                nw = (int) Math.round(w * pct);
+                nh = (int) Math.round(h * pct);
+            } else if (s.toLowerCase().contains("x")) {
+                String[] parts = s.toLowerCase().split("x");
+                nw = Integer.parseInt(parts[0].trim());
+                nh = Integer.parseInt(parts[1].trim());
+            } else {
+                nw = Integer.parseInt(s);
+                nh = (int) Math.round(h * (nw / (double) w));
+            }
+            if (nw < 1 || nh < 1 || nw > 65535 || nh > 65535) return Optional.empty();
+            return Optional.of(new Dimension(nw, nh));
+        } catch (Exception ex) {
+            return Optional.empty();
+        }
     }
 
     private void runAsync(Operations.OperationSupplier supplier) {
+        runAsync(supplier, null);
+    }
+
+    private void runAsync(Operations.OperationSupplier supplier, Rectangle region) {
         if (!ensureImage()) return;
+        long started = System.nanoTime();
+        runEdit(document -> {
+            if (region == null) document.apply(supplier.get());
+            else document.applyRegion(supplier.get(), region);
+        }, () -> Startup.filterApplied((System.nanoTime() - started) / 1_000_000));
+    }
 
+    private void runEdit(Consumer<ImageProcessor> edit) {
+        runEdit(edit, () -> { });
+    }
+
+    // Every change to a document, undo and redo included, runs here off the EDT, followed by the statistics
+    // recount, so the status bar only ever reads statistics that are already published.
+    private void runEdit(Consumer<ImageProcessor> edit, Runnable onDone) {
         progressBar.setIndeterminate(true);
         progressBar.setVisible(true);
         setControlsEnabled(false);
-
-        new SwingWorker<BufferedImage, Void>() {
-            @Override protected BufferedImage doInBackground() {
-                return document.apply(supplier.get());
+        var document = document();
+        var canvas = canvas();
+
+        new SwingWorker<Void, Void>() {
+            @Override protected Void doInBackground() {
+                edit.accept(document);
+                document.statistics();
+                return null;
             }
             @Override protected void done() {
                 try {
                     if (!isCancelled()) {
                         canvas.repaint();
                         refreshUI();
+                        onDone.run();
                     }
                 } finally {
                     progressBar.setIndeterminate(false);
                     progressBar.setVisible(false);
                     setControlsEnabled(true);
+                    countStatisticsIfStale();
                 }
             }
         }.execute();
     }
 
+    // While an edit runs on a worker, everything that could touch the same document is off, keyboard
+    // shortcuts included: the actions themselves are disabled, not just their buttons.
     private void setControlsEnabled(boolean enabled) {
+        busy = !enabled;
         for (var c : new JComponent[]{filterBox, brightness, contrast, blurRadius, applyBtn}) c.setEnabled(enabled);
-        undoBtn.setEnabled(enabled && document.canUndo());
-        redoBtn.setEnabled(enabled && document.canRedo());
+        for (var a : new Action[]{resetAction, rotateLeftAction, rotateRightAction, flipHAction, flipVAction, resizeAction,
+                cropModeAction, applyCropAction, closeTabAction}) a.setEnabled(enabled);
+        undoAction.setEnabled(enabled && document().canUndo());
+        redoAction.setEnabled(enabled && document().canRedo());
     }
 
     // === Status ===
     private void refreshUI() {
-        undoBtn.setEnabled(document.canUndo());
-        redoBtn.setEnabled(document.canRedo());
+        canvas().dropSelectionIfResized();
+        countStatisticsIfStale();
+        undoAction.setEnabled(!busy && document().canUndo());
+        redoAction.setEnabled(!busy && document().canRedo());
         updateStatus();
-        frame.setTitle(document.windowTitle());
-        canvas.revalidate();
-        canvas.repaint();
+        frame.setTitle(document().windowTitle());
+        tabs.setTitleAt(tabs.getSelectedIndex(), document().fileNameOr("Untitled"));
+        canvas().revalidate();
+        canvas().repaint();
+    }
+
+    // A freshly loaded or switched-to document may not have statistics yet; count them in the background.
+    private void countStatisticsIfStale() {
+        if (!busy && document().getImage() != null && !document().statisticsCurrent()) runEdit(_ -> { });
     }
 
     private void updateStatus() {
-        var img = document.getImage();
+        var img = document().getImage();
         if (img == null) {
             statusLeft.setText("No image");
             statusCenter.setText("—");
@@ -411,14 +683,19 @@ public final class MainWindow {
             return;
         }
         statusLeft.setText(img.getWidth() + "×" + img.getHeight());
-        statusCenter.setText(Math.round(canvas.getZoom() * 100) + "%");
-        statusRight.setText(document.fileNameOr("Untitled"));
+        var stats = document().latestStatistics();
+        statusCenter.setText(Math.round(canvas().getZoom() * 100) + "%  |  Luma " + (stats == null ? "—"
+                : stats.min(ImageStats.LUMA) + "–" + stats.max(ImageStats.LUMA) + ", mean " + Math.round(stats.mean(ImageStats.LUMA))));
+        var memory = MemoryGovernor.shared();
+        statusRight.setText(document().fileNameOr("Untitled") + "  |  Mem " + (memory.residentBytes() >> 20) + "/"
+                + (memory.budget() >> 20) + " MB, " + (memory.swappedBytes() >> 20) + " MB swapped"
+                + (memory.offHeapBytes() > 0 ? ", " + (memory.offHeapBytes() >> 20) + " MB off-heap" : ""));
     }
 
     private void updateStatus(MouseEvent e) {
         updateStatus();
-        var p = canvas.toImagePoint(e.getPoint());
-        var img = document.getImage();
+        var p = canvas().toImagePoint(e.getPoint());
+        var img = document().getImage();
         if (img == null || p.x < 0 || p.y < 0 || p.x >= img.getWidth() || p.y >= img.getHeight()) {
             statusLeft.setText(statusLeft.getText() + "  |  —");
             return;
@@ -431,7 +708,7 @@ public final class MainWindow {
     }
 
     private boolean ensureImage() {
-        if (document.getImage() != null) return true;
+        if (document().getImage() != null) return true;
         JOptionPane.showMessageDialog(frame, "Open an image first.", "Info", JOptionPane.INFORMATION_MESSAGE);
         return false;
     }
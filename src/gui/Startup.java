@@ -0,0 +1,76 @@
+// === Startup (Background Preloading, Warm-Up, Timing, Training Run) ===
+package gui;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.time.Instant;
+import javax.swing.SwingUtilities;
+import processing.ImageProcessor;
+import processing.Operations;
+import util.ImageIOUtils;
+
+final class Startup {
+    private Startup() {}
+
+    // JVM launch time where the OS reports it, so the figures include JVM boot and class loading.
+    private static final long START = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+
+    private static volatile boolean frameReported, filterReported;
+
+    // Codec loading, and the kernel warm-up when -Dimagestudio.warmUp=true, run on a low-priority
+    // daemon thread while the window is being built.
+    static void preloadInBackground() {
+        boolean warmUp = Boolean.getBoolean("imagestudio.warmUp");
+        Thread.ofPlatform().daemon().name("startup-preload").priority(Thread.MIN_PRIORITY).start(() -> {
+            long t0 = System.nanoTime();
+            ImageIOUtils.preload();
+            long t1 = System.nanoTime();
+            if (warmUp) Operations.warmUp();
+            report("preload: image codecs " + (t1 - t0) / 1_000_000 + " ms"
+                    + (warmUp ? ", kernel warm-up " + (System.nanoTime() - t1) / 1_000_000 + " ms" : ""));
+        });
+    }
+
+    static void frameShown() {
+        if (frameReported) return;
+        frameReported = true;
+        report("first frame after " + sinceStart() + " ms");
+    }
+
+    static void filterApplied(long tookMillis) {
+        if (filterReported) return;
+        filterReported = true;
+        report("first filter finished after " + sinceStart() + " ms (filter took " + tookMillis + " ms)");
+    }
+
+    // === Training Run ===
+    // Exercises the start-up path once and exits, for use with -XX:ArchiveClassesAtExit so the classes it
+    // loads go into an AppCDS archive. The window is built but never shown; headless runs skip it.
+    static void train() throws Exception {
+        ImageIOUtils.preload();
+        Operations.warmUp();
+        if (!GraphicsEnvironment.isHeadless()) {
+            MainWindow.installLookAndFeel();
+            SwingUtilities.invokeAndWait(() -> {
+                var window = new MainWindow();
+                window.buildDeferredMenus();
+                window.dispose();
+            });
+        }
+        var doc = new ImageProcessor();
+        doc.load(new BufferedImage(300, 200, BufferedImage.TYPE_INT_RGB), null);
+        doc.apply(Operations.grayscale());
+        doc.statistics();
+        doc.undo();
+        doc.dispose();
+        report("training run finished after " + sinceStart() + " ms");
+        System.exit(0);
+    }
+
+    private static long sinceStart() { return System.currentTimeMillis() - START; }
+
+    private static void report(String message) {
+        System.out.println("[startup] " + message);
+    }
+}
@@ -0,0 +1,67 @@
+// === Buffer Pool (Reusable Destination Images) ===
+package processing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class BufferPool {
+
+    private static final BufferPool SHARED = new BufferPool(256L << 20);
+
+    private record Key(int width, int height, int type) {}
+
+    private final Map<Key, ArrayDeque<BufferedImage>> free = new HashMap<>();
+    private final long maxRetainedBytes;
+    private long retainedBytes;
+    private long hits, misses;
+
+    public BufferPool(long maxRetainedBytes) {
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    public static BufferPool shared() { return SHARED; }
+
+    // Returned buffers keep whatever pixels they held before; callers overwrite or clear them.
+    public BufferedImage acquire(int width, int height) {
+        return acquire(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    public synchronized BufferedImage acquire(int width, int height, int type) {
+        var bucket = free.get(new Key(width, height, type));
+        if (bucket != null && !bucket.isEmpty()) {
+            BufferedImage img = bucket.pop();
+            retainedBytes -= bytesOf(img);
+            hits++;
+            return img;
+        }
+        misses++;
+        return new BufferedImage(width, height, type);
+    }
+
+    public synchronized void release(BufferedImage img) {
+        if (img == null || img.getType() == BufferedImage.TYPE_CUSTOM) return;
+        long bytes = bytesOf(img);
+        if (retainedBytes + bytes > maxRetainedBytes) return;
+        var bucket = free.computeIfAbsent(new Key(img.getWidth(), img.getHeight(), img.getType()), _ -> new ArrayDeque<>());
+        for (var pooled : bucket) if (pooled == img) return;
+        bucket.push(img);
+        retainedBytes += bytes;
+    }
+
+    public synchronized void clear() {
+        free.clear();
+        retainedBytes = 0;
+    }
+
+    public synchronized long retainedBytes() { return retainedBytes; }
+    public synchronized long hits() { return hits; }
+    public synchronized long misses() { return misses; }
+
+    static long bytesOf(BufferedImage img) {
+        var db = img.getRaster().getDataBuffer();
+        return (long) db.getSize() * db.getNumBanks() * (DataBuffer.getDataTypeSize(db.getDataType()) / 8);
+    }
+}
@@ -1,25 +1,70 @@
 // === Document Model (Image, Undo/Redo, Apply Operations) ===
 package processing;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 
 public final class ImageProcessor {
 
-    private BufferedImage image;
-    private BufferedImage original;
+    // The working raster is what operations and the canvas read; it is a governed snapshot, pinned
+    // while the document is active. Alongside it, every version of the document (current, undo, redo
+    // and the original) is a TiledImage, and consecutive versions share every tile an edit left alone.
+    // current is read by the EDT while a worker edits, so a new snapshot is published before the old one
+    // is disposed, and the old raster is parked for one edit instead of pooled (see replaceCurrent).
+    private volatile Snapshot current;
+    private BufferedImage parked;
+    private TiledImage tiles;
+    private TiledImage original;
     private File sourceFile;
+    private boolean active = true;
 
-    private final Deque<BufferedImage> undo = new ArrayDeque<>();
-    private final Deque<BufferedImage> redo = new ArrayDeque<>();
+    private final Deque<TiledImage> undo = new ArrayDeque<>();
+    private final Deque<TiledImage> redo = new ArrayDeque<>();
+    private final BufferPool pool = BufferPool.shared();
+
+    // Bumped on every change to image. tracked holds the statistics of trackedVersion and is only
+    // touched by the thread editing the document; other threads read the published copy.
+    private record Published(long version, ImageStats stats) {}
+    private volatile long version;
+    private ImageStats tracked;
+    private long trackedVersion = -1;
+    private volatile Published published;
 
     public void load(BufferedImage img, File file) {
-        this.image = Operations.copyOf(img);
-        this.original = Operations.copyOf(img);
+        dispose();
+        BufferedImage argb = Operations.toArgb(img);
+        this.current = new Snapshot(argb, true);
+        this.tiles = TiledImage.of(argb);
+        this.original = tiles.share();
+        if (!active) current.unpin();
         this.sourceFile = file;
-        undo.clear(); redo.clear();
+        version++;
+    }
+
+    // Releases all pixels and history; the document is empty afterwards.
+    public void dispose() {
+        releaseAll(undo); releaseAll(redo);
+        if (current != null) current.dispose();
+        if (parked != null) pool.release(parked);
+        if (tiles != null) tiles.release();
+        if (original != null) original.release();
+        current = null;
+        parked = null;
+        tiles = original = null;
+        tracked = null;
+        trackedVersion = -1;
+        published = null;
+    }
+
+    // Inactive documents let the governor spill their current image as well.
+    public void setActive(boolean active) {
+        this.active = active;
+        if (current == null) return;
+        if (active) current.pin(); else current.unpin();
     }
 
     public String fileNameOr(String fallback) {
@@ -30,40 +75,198 @@ public final class ImageProcessor {
         return "Image Studio — " + (sourceFile != null ? sourceFile.getName() : "Untitled");
     }
 
-    public BufferedImage getImage() { return image; }
+    // Safe from any thread; a snapshot replaced while it is being read is retried with its successor.
+    public BufferedImage getImage() {
+        while (true) {
+            Snapshot s = current;
+            if (s == null) return null;
+            try {
+                return s.image();
+            } catch (IllegalStateException e) {
+                if (s == current) throw e;
+            }
+        }
+    }
+
+    // The current version as an immutable image that later edits cannot change, e.g. for encoding
+    // on another thread. The caller must release it.
+    public TiledImage snapshot() { return tiles == null ? null : tiles.share(); }
+
+    public long version() { return version; }
 
+    // Brings the statistics up to date, recounting the whole image if needed, and publishes them.
+    // Call it from the editing thread, never the EDT.
+    public synchronized ImageStats statistics() {
+        if (current == null) return null;
+        long v = version;
+        if (trackedVersion != v) {
+            tracked = ImageStats.of(current.image());
+            trackedVersion = v;
+        }
+        Published p = published;
+        if (p == null || p.version() != v) published = p = new Published(v, tracked.copy());
+        return p.stats();
+    }
+
+    public boolean statisticsCurrent() {
+        Published p = published;
+        return p != null && p.version() == version;
+    }
+
+    // The statistics last published by statistics(); never computes, may lag behind the image or be null.
+    public ImageStats latestStatistics() {
+        Published p = published;
+        return p == null ? null : p.stats();
+    }
+
+    // Operations never modify their source, so the result goes into a pooled buffer and the old raster
+    // returns to the pool; its pixels live on in the previous tiled version.
     public BufferedImage apply(Operations.Operation op) {
-        if (image == null) return null;
-        pushUndo(image);
-        image = op.apply(image);
-        redo.clear();
-        return image;
+        if (current == null) return null;
+        current.pin();
+        BufferedImage image = current.image();
+        BufferedImage dst = pool.acquire(image.getWidth(), image.getHeight());
+        BufferedImage out = op.apply(image, dst);
+        if (out != dst) pool.release(dst);
+        if (out == image) {
+            if (!active) current.unpin();
+            return image;
+        }
+        commit(tiles.derive(out, null));
+        replaceCurrent(out);
+        version++;
+        return out;
+    }
+
+    // Runs op over roi plus its halo and writes the result back in place; the new version copies
+    // only the tiles roi touches. Operations that change the image size are ignored here.
+    public BufferedImage applyRegion(Operations.Operation op, Rectangle roi) {
+        if (current == null) return null;
+        current.pin();
+        BufferedImage image = current.image();
+        try {
+            Rectangle bounds = new Rectangle(image.getWidth(), image.getHeight());
+            Rectangle area = roi.intersection(bounds);
+            if (area.isEmpty()) return image;
+
+            int halo = op.halo();
+            Rectangle padded = new Rectangle(area.x - halo, area.y - halo,
+                    area.width + 2 * halo, area.height + 2 * halo).intersection(bounds);
+            BufferedImage patch = pool.acquire(padded.width, padded.height);
+            Operations.copyRect(image, padded.x, padded.y, padded.width, padded.height, patch, 0, 0);
+
+            BufferedImage dst = pool.acquire(padded.width, padded.height);
+            BufferedImage out = op.apply(patch, dst);
+            if (out != dst) pool.release(dst);
+            if (out == patch || out.getWidth() != padded.width || out.getHeight() != padded.height) {
+                if (out != patch) pool.release(out);
+                pool.release(patch);
+                return image;
+            }
+
+            replaceRegion(image, area, () -> Operations.copyRect(out, area.x - padded.x, area.y - padded.y,
+                    area.width, area.height, image, area.x, area.y));
+            pool.release(out);
+            pool.release(patch);
+            commit(tiles.derive(image, area));
+            return image;
+        } finally {
+            if (!active) current.unpin();
+        }
     }
 
     public void revert() {
         if (original == null) return;
-        pushUndo(image);
-        image = Operations.copyOf(original);
-        redo.clear();
+        TiledImage target = original.share();
+        TiledImage previous = tiles;
+        pushUndo(previous);
+        tiles = target;
+        restore(previous, target);
+        releaseAll(redo);
     }
 
     public void undo() {
         if (!canUndo()) return;
-        redo.push(Operations.copyOf(image));
-        image = undo.pop();
+        TiledImage previous = tiles;
+        redo.push(previous);
+        tiles = undo.pop();
+        restore(previous, tiles);
     }
 
     public void redo() {
         if (!canRedo()) return;
-        undo.push(Operations.copyOf(image));
-        image = redo.pop();
+        TiledImage previous = tiles;
+        undo.push(previous);
+        tiles = redo.pop();
+        restore(previous, tiles);
     }
 
     public boolean canUndo() { return !undo.isEmpty(); }
     public boolean canRedo() { return !redo.isEmpty(); }
 
-    private void pushUndo(BufferedImage img) {
-        undo.push(Operations.copyOf(img));
-        while (undo.size() > 20) undo.removeLast();
+    // Makes next the current version; the old one moves into undo history.
+    private void commit(TiledImage next) {
+        pushUndo(tiles);
+        tiles = next;
+        releaseAll(redo);
+    }
+
+    // Brings the working raster from version from to version to. Same-sized versions only copy the
+    // tiles they do not share, keeping statistics current tile by tile while that is the cheaper path.
+    private void restore(TiledImage from, TiledImage to) {
+        current.pin();
+        try {
+            BufferedImage image = current.image();
+            if (image.getWidth() != to.getWidth() || image.getHeight() != to.getHeight()) {
+                BufferedImage next = pool.acquire(to.getWidth(), to.getHeight());
+                to.copyTo(next);
+                replaceCurrent(next);
+                version++;
+                return;
+            }
+            var changed = new ArrayList<Integer>();
+            for (int i = 0; i < to.tileCount(); i++) if (!to.shares(from, i)) changed.add(i);
+            if (changed.size() * 2 > to.tileCount()) {
+                to.copyTo(image);
+                version++;
+                return;
+            }
+            for (int i : changed) replaceRegion(image, to.bounds(i), () -> to.copyTile(i, image));
+        } finally {
+            if (!active) current.unpin();
+        }
+    }
+
+    // Publishes next as the working raster, then retires the old snapshot. Its raster goes back to the pool
+    // only at the following replacement: the EDT may still be painting it now, but edits are serialised with
+    // the EDT's refresh, so nothing reads it by the time the next edit replaces the raster again.
+    private void replaceCurrent(BufferedImage next) {
+        Snapshot old = current;
+        Snapshot fresh = new Snapshot(next, true);
+        if (!active) fresh.unpin();
+        current = fresh;
+        BufferedImage raster = old.detach();
+        if (parked != null) pool.release(parked);
+        parked = raster;
+    }
+
+    // Runs write, which changes only area of image, keeping cached statistics current by
+    // swapping the area's old histogram contribution for the new one.
+    private synchronized void replaceRegion(BufferedImage image, Rectangle area, Runnable write) {
+        boolean track = trackedVersion == version;
+        if (track) tracked.remove(image, area);
+        write.run();
+        if (track) tracked.add(image, area);
+        version++;
+        if (track) trackedVersion = version;
+    }
+
+    private void pushUndo(TiledImage previous) {
+        undo.push(previous);
+        while (undo.size() > 20) undo.removeLast().release();
+    }
+
+    private void releaseAll(Deque<TiledImage> history) {
+        while (!history.isEmpty()) history.pop().release();
     }
 }
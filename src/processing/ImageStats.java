@@ -0,0 +1,110 @@
+// === Image Statistics (Histograms, Min/Max/Mean, Percentiles) ===
+package processing;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+public final class ImageStats {
+
+    public static final int RED = 0, GREEN = 1, BLUE = 2, ALPHA = 3, LUMA = 4;
+    private static final int CHANNELS = 5;
+
+    private final long[][] counts = new long[CHANNELS][256];
+    private long pixels;
+    // Per-band partial histograms, kept between reductions so recomputing allocates nothing.
+    private int[][] scratch = new int[0][];
+
+    public static ImageStats of(BufferedImage img) {
+        var stats = new ImageStats();
+        stats.recompute(img);
+        return stats;
+    }
+
+    public void recompute(BufferedImage img) {
+        for (long[] c : counts) Arrays.fill(c, 0);
+        pixels = 0;
+        add(img, new Rectangle(img.getWidth(), img.getHeight()));
+    }
+
+    // Independent copy of the histograms, for handing to readers on other threads.
+    public ImageStats copy() {
+        var c = new ImageStats();
+        for (int ch = 0; ch < CHANNELS; ch++) System.arraycopy(counts[ch], 0, c.counts[ch], 0, 256);
+        c.pixels = pixels;
+        return c;
+    }
+
+    public void add(BufferedImage img, Rectangle area) { accumulate(img, area, 1); }
+    public void remove(BufferedImage img, Rectangle area) { accumulate(img, area, -1); }
+
+    // === Queries ===
+    public long pixelCount() { return pixels; }
+    public long count(int channel, int value) { return counts[channel][value]; }
+
+    public int min(int channel) {
+        for (int v = 0; v < 256; v++) if (counts[channel][v] != 0) return v;
+        return 0;
+    }
+
+    public int max(int channel) {
+        for (int v = 255; v >= 0; v--) if (counts[channel][v] != 0) return v;
+        return 0;
+    }
+
+    public double mean(int channel) {
+        if (pixels == 0) return 0;
+        long sum = 0;
+        for (int v = 0; v < 256; v++) sum += v * counts[channel][v];
+        return sum / (double) pixels;
+    }
+
+    // Smallest value with at least fraction (0..1) of the pixels at or below it.
+    public int percentile(int channel, double fraction) {
+        if (pixels == 0) return 0;
+        long target = (long) Math.ceil(Math.max(0, Math.min(1, fraction)) * pixels);
+        long seen = 0;
+        for (int v = 0; v < 256; v++) {
+            seen += counts[channel][v];
+            if (seen >= target && seen > 0) return v;
+        }
+        return 255;
+    }
+
+    // === Reduction ===
+    private void accumulate(BufferedImage img, Rectangle area, int sign) {
+        Rectangle r = area.intersection(new Rectangle(img.getWidth(), img.getHeight()));
+        if (r.isEmpty()) return;
+        int bands = Pixels.bandCount(r.height);
+        if (scratch.length != bands) scratch = new int[bands][CHANNELS * 256];
+        Pixels.View view = Pixels.view(img);
+
+        Pixels.forEachBand(r.height, (band, y0, y1) -> {
+            int[] h = scratch[band];
+            Arrays.fill(h, 0);
+            int[] row = view == null ? new int[r.width] : null;
+            for (int y = r.y + y0; y < r.y + y1; y++) {
+                int[] data; int i;
+                if (view != null) { data = view.data(); i = view.index(r.x, y); }
+                else { data = img.getRGB(r.x, y, r.width, 1, row, 0, r.width); i = 0; }
+                for (int end = i + r.width; i < end; i++) {
+                    int argb = data[i];
+                    int red = (argb >>> 16) & 0xFF, green = (argb >>> 8) & 0xFF, blue = argb & 0xFF;
+                    h[red]++;
+                    h[256 + green]++;
+                    h[512 + blue]++;
+                    h[768 + (argb >>> 24)]++;
+                    h[1024 + ((77 * red + 150 * green + 29 * blue) >> 8)]++;
+                }
+            }
+        });
+
+        for (int[] h : scratch) {
+            for (int c = 0; c < CHANNELS; c++) {
+                long[] dst = counts[c];
+                for (int v = 0; v < 256; v++) dst[v] += sign * (long) h[c * 256 + v];
+            }
+        }
+        pixels += sign * (long) r.width * r.height;
+    }
+}
@@ -0,0 +1,60 @@
+// === Memory Governor (Shared Pixel Budget, LRU Spill to Disk) ===
+package processing;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+
+public final class MemoryGovernor {
+
+    private static final MemoryGovernor SHARED = new MemoryGovernor(
+            Long.getLong("imagestudio.memoryBudgetMB", Runtime.getRuntime().maxMemory() / 2 >> 20) << 20,
+            "deflate".equalsIgnoreCase(System.getProperty("imagestudio.swapCompression"))
+                    ? SwapFile.Compression.DEFLATE : SwapFile.Compression.RAW);
+
+    // Resident snapshots in access order; the eldest unpinned ones are spilled first.
+    private final LinkedHashMap<Snapshot, Boolean> resident = new LinkedHashMap<>(64, 0.75f, true);
+    private volatile long budget;
+    private final SwapFile.Compression compression;
+    private SwapFile swap;
+    private long residentBytes, swappedBytes;
+
+    MemoryGovernor(long budgetBytes, SwapFile.Compression compression) {
+        this.budget = budgetBytes;
+        this.compression = compression;
+    }
+
+    public static MemoryGovernor shared() { return SHARED; }
+
+    public long budget() { return budget; }
+
+    // Changes the budget at run time; lowering it spills straight away.
+    public void setBudget(long bytes) {
+        budget = bytes;
+        enforce();
+    }
+    public synchronized long residentBytes() { return residentBytes; }
+    public synchronized long swappedBytes() { return swappedBytes; }
+    // History tiles held outside the Java heap when an off-heap tile store is configured.
+    public long offHeapBytes() { return TileStore.shared().offHeapBytes(); }
+
+    // === Snapshot Bookkeeping (called by Snapshot while holding this lock) ===
+    void admitted(Snapshot s) { resident.put(s, Boolean.TRUE); residentBytes += s.bytes(); }
+    void touched(Snapshot s) { resident.get(s); }
+    void evicted(Snapshot s) { if (resident.remove(s) != null) residentBytes -= s.bytes(); }
+    void swappedIn(Snapshot s) { swappedBytes -= s.bytes(); }
+    void swappedOut(Snapshot s) { swappedBytes += s.bytes(); }
+
+    SwapFile swap() {
+        if (swap == null) swap = new SwapFile(compression);
+        return swap;
+    }
+
+    // Spills least-recently-used unpinned snapshots until resident pixels fit the budget.
+    public synchronized void enforce() {
+        if (residentBytes <= budget) return;
+        for (Snapshot s : new ArrayList<>(resident.keySet())) {
+            if (residentBytes <= budget) break;
+            if (!s.isPinned()) s.spill();
+        }
+    }
+}
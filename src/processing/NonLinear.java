@@ -0,0 +1,261 @@
+// === Non-Linear Filters (Median, Min/Max, Bilateral Grid, Unsharp Mask) ===
+package processing;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+final class NonLinear {
+    private NonLinear() {}
+
+    // Column strip width for vertical passes; each strip is processed as row vectors.
+    private static final int STRIP = 64;
+
+    // === Median ===
+    // Constant-time median (Perreault & Hebert): per-column histograms slide down the band,
+    // the kernel histogram slides across the row, and fine bins are refreshed lazily per coarse bin.
+    // Each band works through tile-wide column strips, so its histograms stay small however wide the image.
+    static BufferedImage median(BufferedImage src, int r, BufferedImage dst) {
+        int w = src.getWidth(), h = src.getHeight();
+        Pixels.View in = Pixels.readable(src), out = Pixels.view(dst);
+        int rank = (2 * r + 1) * (2 * r + 1) / 2;
+        int span = Math.min(w, TiledImage.TILE + 2 * r);
+
+        Pixels.forEachBand(h, (band, y0, y1) -> {
+            int[] col = new int[span * 256], colCoarse = new int[span * 16];
+            int[] fine = new int[256], coarse = new int[16], last = new int[16];
+
+            for (int x0 = 0; x0 < w; x0 += TiledImage.TILE) {
+                // Columns lo..hi are every column a window centred in x0..x1 - 1 can reach.
+                int x1 = Math.min(w, x0 + TiledImage.TILE), lo = Math.max(0, x0 - r), hi = Math.min(w - 1, x1 - 1 + r);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    Arrays.fill(col, 0);
+                    Arrays.fill(colCoarse, 0);
+                    for (int dy = -r; dy <= r; dy++) columnRow(in, clamp(y0 + dy, h), lo, hi, shift, col, colCoarse, 1);
+
+                    for (int y = y0; y < y1; y++) {
+                        if (y > y0) {
+                            columnRow(in, clamp(y - r - 1, h), lo, hi, shift, col, colCoarse, -1);
+                            columnRow(in, clamp(y + r, h), lo, hi, shift, col, colCoarse, 1);
+                        }
+                        Arrays.fill(coarse, 0);
+                        Arrays.fill(last, -1);
+                        for (int dx = -r; dx <= r; dx++) {
+                            int c = (clamp(x0 + dx, w) - lo) * 16;
+                            for (int b = 0; b < 16; b++) coarse[b] += colCoarse[c + b];
+                        }
+
+                        int o = out.index(0, y), s = in.index(0, y);
+                        for (int x = x0; x < x1; x++) {
+                            if (x > x0) {
+                                int sub = (clamp(x - r - 1, w) - lo) * 16, add = (clamp(x + r, w) - lo) * 16;
+                                for (int b = 0; b < 16; b++) coarse[b] += colCoarse[add + b] - colCoarse[sub + b];
+                            }
+                            int sum = 0, b = 0;
+                            while (sum + coarse[b] <= rank) sum += coarse[b++];
+
+                            int seg = b * 16;
+                            if (last[b] < 0 || x - last[b] > 2 * r + 1) {
+                                Arrays.fill(fine, seg, seg + 16, 0);
+                                for (int dx = -r; dx <= r; dx++) {
+                                    int c = (clamp(x + dx, w) - lo) * 256 + seg;
+                                    for (int i = 0; i < 16; i++) fine[seg + i] += col[c + i];
+                                }
+                            } else {
+                                for (int j = last[b] + 1; j <= x; j++) {
+                                    int sub = (clamp(j - r - 1, w) - lo) * 256 + seg, add = (clamp(j + r, w) - lo) * 256 + seg;
+                                    for (int i = 0; i < 16; i++) fine[seg + i] += col[add + i] - col[sub + i];
+                                }
+                            }
+                            last[b] = x;
+
+                            int v = seg;
+                            while (sum + fine[v] <= rank) sum += fine[v++];
+                            if (shift == 0) out.data()[o + x] = (in.data()[s + x] & 0xFF000000) | v;
+                            else out.data()[o + x] |= v << shift;
+                        }
+                    }
+                }
+            }
+        });
+        return dst;
+    }
+
+    private static void columnRow(Pixels.View in, int y, int lo, int hi, int shift, int[] col, int[] colCoarse, int sign) {
+        int s = in.index(0, y);
+        for (int x = lo; x <= hi; x++) {
+            int v = (in.data()[s + x] >>> shift) & 0xFF, c = x - lo;
+            col[c * 256 + v] += sign;
+            colCoarse[c * 16 + (v >>> 4)] += sign;
+        }
+    }
+
+    // === Min / Max ===
+    // van Herk / Gil-Werman: per-block prefix and suffix extrema give any window's extremum in
+    // three comparisons regardless of radius. Applied separably, all four channels at once.
+    static BufferedImage minMax(BufferedImage src, int r, boolean max, BufferedImage dst) {
+        int w = src.getWidth(), h = src.getHeight(), k = 2 * r + 1;
+        Pixels.View in = Pixels.readable(src), out = Pixels.view(dst);
+        BufferedImage tmpImage = BufferPool.shared().acquire(w, h);
+        Pixels.View tmp = Pixels.view(tmpImage);
+
+        Pixels.forEachBand(h, (band, y0, y1) -> {
+            int n = w + 2 * r;
+            int[] f = new int[n], g = new int[n], hh = new int[n];
+            for (int y = y0; y < y1; y++) {
+                int s = in.index(0, y), o = tmp.index(0, y);
+                for (int i = 0; i < n; i++) f[i] = in.data()[s + clamp(i - r, w)];
+                for (int i = 0; i < n; i++) g[i] = i % k == 0 ? f[i] : extreme(g[i - 1], f[i], max);
+                for (int i = n - 1; i >= 0; i--) hh[i] = i % k == k - 1 || i == n - 1 ? f[i] : extreme(hh[i + 1], f[i], max);
+                for (int x = 0; x < w; x++) tmp.data()[o + x] = extreme(hh[x], g[x + k - 1], max);
+            }
+        });
+
+        IntStream.range(0, (w + STRIP - 1) / STRIP).parallel().forEach(strip -> {
+            int x0 = strip * STRIP, sw = Math.min(STRIP, w - x0), n = h + 2 * r;
+            int[] g = new int[n * sw], hh = new int[n * sw];
+            for (int py = 0; py < n; py++) {
+                int s = tmp.index(x0, clamp(py - r, h)), base = py * sw;
+                for (int i = 0; i < sw; i++) {
+                    g[base + i] = py % k == 0 ? tmp.data()[s + i] : extreme(g[base - sw + i], tmp.data()[s + i], max);
+                }
+            }
+            for (int py = n - 1; py >= 0; py--) {
+                int s = tmp.index(x0, clamp(py - r, h)), base = py * sw;
+                boolean edge = py % k == k - 1 || py == n - 1;
+                for (int i = 0; i < sw; i++) {
+                    hh[base + i] = edge ? tmp.data()[s + i] : extreme(hh[base + sw + i], tmp.data()[s + i], max);
+                }
+            }
+            for (int y = 0; y < h; y++) {
+                int o = out.index(x0, y), a = y * sw, b = (y + k - 1) * sw;
+                for (int i = 0; i < sw; i++) out.data()[o + i] = extreme(hh[a + i], g[b + i], max);
+            }
+        });
+
+        BufferPool.shared().release(tmpImage);
+        return dst;
+    }
+
+    private static int extreme(int a, int b, boolean max) {
+        if (max) {
+            return Math.max(a >>> 24, b >>> 24) << 24 | Math.max(a & 0xFF0000, b & 0xFF0000)
+                    | Math.max(a & 0xFF00, b & 0xFF00) | Math.max(a & 0xFF, b & 0xFF);
+        }
+        return Math.min(a >>> 24, b >>> 24) << 24 | Math.min(a & 0xFF0000, b & 0xFF0000)
+                | Math.min(a & 0xFF00, b & 0xFF00) | Math.min(a & 0xFF, b & 0xFF);
+    }
+
+    // === Bilateral ===
+    // Bilateral grid (Paris & Durand): colours are splatted into a coarse (x, y, luma) grid,
+    // blurred there, and sliced back with trilinear interpolation. Alpha is kept as is.
+    private static final int PAD = 2;
+    private static final float[] GRID_KERNEL = {1 / 16f, 4 / 16f, 6 / 16f, 4 / 16f, 1 / 16f};
+
+    static BufferedImage bilateral(BufferedImage src, float sigmaSpatial, float sigmaRange, BufferedImage dst) {
+        int w = src.getWidth(), h = src.getHeight();
+        float ss = Math.max(1f, sigmaSpatial), sr = Math.max(1f, sigmaRange);
+        int gw = (int) ((w - 1) / ss + 0.5f) + 1 + 2 * PAD;
+        int gh = (int) ((h - 1) / ss + 0.5f) + 1 + 2 * PAD;
+        int gd = (int) (255 / sr + 0.5f) + 1 + 2 * PAD;
+        Pixels.View in = Pixels.readable(src), out = Pixels.view(dst);
+        float[] grid = new float[gw * gh * gd * 4], tmp = new float[grid.length];
+
+        // Rows that round to the same grid row are splatted by one task, so tasks never share cells.
+        int[] from = new int[gh], to = new int[gh];
+        Arrays.fill(from, h);
+        for (int y = 0; y < h; y++) {
+            int gy = (int) (y / ss + 0.5f) + PAD;
+            from[gy] = Math.min(from[gy], y);
+            to[gy] = y + 1;
+        }
+        IntStream.range(0, gh).parallel().forEach(gy -> {
+            for (int y = from[gy]; y < to[gy]; y++) {
+                int s = in.index(0, y);
+                for (int x = 0; x < w; x++) {
+                    int argb = in.data()[s + x];
+                    int red = (argb >>> 16) & 0xFF, green = (argb >>> 8) & 0xFF, blue = argb & 0xFF;
+                    int luma = (77 * red + 150 * green + 29 * blue) >> 8;
+                    int gx = (int) (x / ss + 0.5f) + PAD, gz = (int) (luma / sr + 0.5f) + PAD;
+                    int i = ((gy * gw + gx) * gd + gz) * 4;
+                    grid[i] += red; grid[i + 1] += green; grid[i + 2] += blue; grid[i + 3] += 1;
+                }
+            }
+        });
+
+        blurGrid(grid, tmp, gw, gh, gd, 0);
+        blurGrid(tmp, grid, gw, gh, gd, 1);
+        blurGrid(grid, tmp, gw, gh, gd, 2);
+
+        Pixels.forEachBand(h, (band, y0, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                float fy = y / ss + PAD;
+                int iy = (int) fy; float ty = fy - iy;
+                int s = in.index(0, y), o = out.index(0, y);
+                for (int x = 0; x < w; x++) {
+                    int argb = in.data()[s + x];
+                    int luma = (77 * ((argb >>> 16) & 0xFF) + 150 * ((argb >>> 8) & 0xFF) + 29 * (argb & 0xFF)) >> 8;
+                    float fx = x / ss + PAD, fz = luma / sr + PAD;
+                    int ix = (int) fx, iz = (int) fz;
+                    float tx = fx - ix, tz = fz - iz;
+                    float red = 0, green = 0, blue = 0, weight = 0;
+                    for (int c = 0; c < 8; c++) {
+                        int cx = ix + (c & 1), cy = iy + ((c >> 1) & 1), cz = iz + (c >> 2);
+                        float f = ((c & 1) == 0 ? 1 - tx : tx) * (((c >> 1) & 1) == 0 ? 1 - ty : ty) * ((c >> 2) == 0 ? 1 - tz : tz);
+                        int i = ((cy * gw + cx) * gd + cz) * 4;
+                        red += f * tmp[i]; green += f * tmp[i + 1]; blue += f * tmp[i + 2]; weight += f * tmp[i + 3];
+                    }
+                    out.data()[o + x] = weight <= 1e-6f ? argb : (argb & 0xFF000000)
+                            | clamp255(red / weight) << 16 | clamp255(green / weight) << 8 | clamp255(blue / weight);
+                }
+            }
+        });
+        return dst;
+    }
+
+    private static void blurGrid(float[] src, float[] dst, int gw, int gh, int gd, int axis) {
+        IntStream.range(0, gh).parallel().forEach(y -> {
+            for (int x = 0; x < gw; x++) {
+                for (int z = 0; z < gd; z++) {
+                    float a = 0, b = 0, c = 0, d = 0;
+                    for (int t = -2; t <= 2; t++) {
+                        int xx = axis == 0 ? x + t : x, yy = axis == 1 ? y + t : y, zz = axis == 2 ? z + t : z;
+                        if (xx < 0 || yy < 0 || zz < 0 || xx >= gw || yy >= gh || zz >= gd) continue;
+                        int i = ((yy * gw + xx) * gd + zz) * 4;
+                        float k = GRID_KERNEL[t + 2];
+                        a += k * src[i]; b += k * src[i + 1]; c += k * src[i + 2]; d += k * src[i + 3];
+                    }
+                    int o = ((y * gw + x) * gd + z) * 4;
+                    dst[o] = a; dst[o + 1] = b; dst[o + 2] = c; dst[o + 3] = d;
+                }
+            }
+        });
+    }
+
+    // === Unsharp Mask ===
+    // Adds amount * (src - blurred) per channel where the difference reaches threshold.
+    static BufferedImage unsharp(BufferedImage src, BufferedImage blurred, float amount, int threshold, BufferedImage dst) {
+        int w = src.getWidth();
+        Pixels.View in = Pixels.readable(src), soft = Pixels.readable(blurred), out = Pixels.view(dst);
+        Pixels.forEachBand(src.getHeight(), (band, y0, y1) -> {
+            for (int y = y0; y < y1; y++) {
+                int s = in.index(0, y), b = soft.index(0, y), o = out.index(0, y);
+                for (int x = 0; x < w; x++) {
+                    int p = in.data()[s + x], q = soft.data()[b + x];
+                    int result = p & 0xFF000000;
+                    for (int shift = 0; shift <= 16; shift += 8) {
+                        int v = (p >>> shift) & 0xFF, diff = v - ((q >>> shift) & 0xFF);
+                        if (Math.abs(diff) >= threshold) v = clamp255(v + amount * diff);
+                        result |= v << shift;
+                    }
+                    out.data()[o + x] = result;
+                }
+            }
+        });
+        return dst;
+    }
+
+    // === Helpers ===
+    private static int clamp(int v, int size) { return v < 0 ? 0 : Math.min(v, size - 1); }
+    private static int clamp255(float v) { return v <= 0 ? 0 : v >= 255 ? 255 : (int) (v + 0.5f); }
+}
@@ -3,19 +3,28 @@ package processing;
 
 import java.awt.*;
 import java.awt.image.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 public final class Operations {
 
     // === Types ===
+    // dst is an optional same-sized TYPE_INT_ARGB image to write into; the result may be dst, src or a pooled buffer.
     @FunctionalInterface
-    public interface Operation { BufferedImage apply(BufferedImage src); }
+    public interface Operation {
+        BufferedImage apply(BufferedImage src, BufferedImage dst);
+        default BufferedImage apply(BufferedImage src) { return apply(src, null); }
+        // Pixels of context a region-scoped apply must read around the region (0 for pixelwise ops).
+        default int halo() { return 0; }
+    }
     @FunctionalInterface
     public interface OperationSupplier { Operation get(); }
 
     // === Built-ins ===
     public static String[] builtInNames() {
-        return new String[]{"None","Grayscale", "Invert", "Sepia", "Funk"};
+        return new String[]{"None","Grayscale", "Invert", "Sepia", "Funk", "Auto Levels", "Auto Contrast", "Equalize",
+                "Median", "Denoise", "Unsharp Mask", "Erode", "Dilate"};
     }
 
     public static Operation named(String name) {
@@ -24,20 +33,41 @@ public final class Operations {
             case "Invert" -> invert();
             case "Sepia" -> sepia();
             case "Funk" -> funk();
+            case "Auto Levels" -> autoLevels();
+            case "Auto Contrast" -> autoContrast();
+            case "Equalize" -> equalize();
+            case "Median" -> median(2);
+            case "Denoise" -> bilateral(8f, 24f);
+            case "Unsharp Mask" -> unsharpMask(2, 0.8f, 4);
+            case "Erode" -> minimum(1);
+            case "Dilate" -> maximum(1);
             case "None" -> none();
             default -> none();
         };
     }
 
-    public static Operation none() { return src -> src; }
+    public static Operation none() { return (src, dst) -> src; }
+
+    public static Operation withHalo(int halo, Operation op) {
+        return new Operation() {
+            @Override public BufferedImage apply(BufferedImage src, BufferedImage dst) { return op.apply(src, dst); }
+            @Override public int halo() { return halo; }
+        };
+    }
 
     public static Operation compose(Operation... ops) {
         var filtered = Arrays.stream(ops).filter(o -> o != null).toList();
-        return src -> {
+        int halo = filtered.stream().mapToInt(Operation::halo).sum();
+        return withHalo(halo, (src, dst) -> {
             BufferedImage cur = src;
-            for (var op : filtered) cur = op.apply(cur);
+            for (int i = 0; i < filtered.size(); i++) {
+                boolean last = i == filtered.size() - 1;
+                BufferedImage next = filtered.get(i).apply(cur, last ? dst : null);
+                if (cur != src && cur != next) BufferPool.shared().release(cur);
+                cur = next;
+            }
             return cur;
-        };
+        });
     }
 
     public static BufferedImage copyOf(BufferedImage src) {
@@ -47,10 +77,24 @@ public final class Operations {
         return new BufferedImage(cm, raster, alpha, null);
     }
 
+    public static void copyRect(BufferedImage src, int sx, int sy, int w, int h, BufferedImage dst, int dx, int dy) {
+        dst.getRaster().setDataElements(dx, dy, src.getRaster().createChild(sx, sy, w, h, 0, 0, null));
+    }
+
+    public static BufferedImage toArgb(BufferedImage src) {
+        if (src.getType() == BufferedImage.TYPE_INT_ARGB) return copyOf(src);
+        BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = dst.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawImage(src, 0, 0, null);
+        g.dispose();
+        return dst;
+    }
+
     // === Pixelwise ===
     public static Operation grayscale() {
-        return src -> {
-            BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        return (src, into) -> {
+            BufferedImage dst = target(into, src.getWidth(), src.getHeight());
             for (int y = 0; y < src.getHeight(); y++) {
                 for (int x = 0; x < src.getWidth(); x++) {
                     int argb = src.getRGB(x, y);
@@ -68,8 +112,8 @@ public final class Operations {
     }
 
     public static Operation invert() {
-        return src -> {
-            BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        return (src, into) -> {
+            BufferedImage dst = target(into, src.getWidth(), src.getHeight());
             for (int y = 0; y < src.getHeight(); y++) {
                 for (int x = 0; x < src.getWidth(); x++) {
                     int argb = src.getRGB(x, y);
@@ -86,8 +130,8 @@ public final class Operations {
     }
 
     public static Operation sepia() {
-        return src -> {
-            BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        return (src, into) -> {
+            BufferedImage dst = target(into, src.getWidth(), src.getHeight());
             for (int y = 0; y < src.getHeight(); y++) {
                 for (int x = 0; x < src.getWidth(); x++) {
                     int argb = src.getRGB(x, y);
@@ -107,8 +151,8 @@ public final class Operations {
     }
 
     public static Operation funk() {
-        return src -> {
-            BufferedImage dst = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        return (src, into) -> {
+            BufferedImage dst = target(into, src.getWidth(), src.getHeight());
             for (int y = 0; y < src.getHeight(); y++) {
                 for (int x = 0; x < src.getWidth(); x++) {
                     int argb = src.getRGB(x, y);
@@ -126,30 +170,96 @@ public final class Operations {
 
     // === Tone ===
     public static Operation brightness(float delta) { // -1..+1
-        return src -> {
+        return (src, dst) -> {
             RescaleOp op = new RescaleOp(
                     new float[]{1f,1f,1f,1f},
                     new float[]{255f*delta,255f*delta,255f*delta,0f}, null);
-            return op.filter(src, null);
+            return op.filter(src, target(dst, src.getWidth(), src.getHeight()));
         };
     }
 
     public static Operation contrast(float amount) { // -1..+1
-        return src -> {
+        return (src, dst) -> {
             float c = 1f + amount;
             float t = 128f * (1f - c);
             RescaleOp op = new RescaleOp(
                     new float[]{c,c,c,1f},
                     new float[]{t,t,t,0f}, null);
-            return op.filter(src, null);
+            return op.filter(src, target(dst, src.getWidth(), src.getHeight()));
+        };
+    }
+
+    // === Histogram-Based ===
+    // Clip fraction at each end of the histogram ignored when stretching (0.5%).
+    private static final double LEVELS_CLIP = 0.005;
+
+    // Stretches each channel independently between its clipped min and max.
+    public static Operation autoLevels() {
+        return (src, dst) -> {
+            ImageStats s = ImageStats.of(src);
+            return applyLut(src, target(dst, src.getWidth(), src.getHeight()),
+                    stretchLut(s, ImageStats.RED), stretchLut(s, ImageStats.GREEN), stretchLut(s, ImageStats.BLUE));
         };
     }
 
+    // Stretches all channels by the same luminance range, preserving hue.
+    public static Operation autoContrast() {
+        return (src, dst) -> {
+            int[] lut = stretchLut(ImageStats.of(src), ImageStats.LUMA);
+            return applyLut(src, target(dst, src.getWidth(), src.getHeight()), lut, lut, lut);
+        };
+    }
+
+    public static Operation equalize() {
+        return (src, dst) -> {
+            ImageStats s = ImageStats.of(src);
+            return applyLut(src, target(dst, src.getWidth(), src.getHeight()),
+                    equalizeLut(s, ImageStats.RED), equalizeLut(s, ImageStats.GREEN), equalizeLut(s, ImageStats.BLUE));
+        };
+    }
+
+    private static int[] stretchLut(ImageStats s, int channel) {
+        int lo = s.percentile(channel, LEVELS_CLIP);
+        int hi = s.percentile(channel, 1 - LEVELS_CLIP);
+        int[] lut = new int[256];
+        for (int v = 0; v < 256; v++) lut[v] = hi <= lo ? v : clamp(Math.round((v - lo) * 255f / (hi - lo)));
+        return lut;
+    }
+
+    private static int[] equalizeLut(ImageStats s, int channel) {
+        int[] lut = new int[256];
+        long total = s.pixelCount(), first = s.count(channel, s.min(channel)), cdf = 0;
+        for (int v = 0; v < 256; v++) {
+            cdf += s.count(channel, v);
+            lut[v] = total <= first ? v : clamp((int) Math.round((cdf - first) * 255.0 / (total - first)));
+        }
+        return lut;
+    }
+
+    private static BufferedImage applyLut(BufferedImage src, BufferedImage dst, int[] lr, int[] lg, int[] lb) {
+        int w = src.getWidth();
+        Pixels.View in = Pixels.view(src), out = Pixels.view(dst);
+        Pixels.forEachBand(src.getHeight(), (band, y0, y1) -> {
+            int[] row = new int[w];
+            for (int y = y0; y < y1; y++) {
+                if (in != null) System.arraycopy(in.data(), in.index(0, y), row, 0, w);
+                else src.getRGB(0, y, w, 1, row, 0, w);
+                for (int x = 0; x < w; x++) {
+                    int argb = row[x];
+                    row[x] = (argb & 0xFF000000) | (lr[(argb >>> 16) & 0xFF] << 16) | (lg[(argb >>> 8) & 0xFF] << 8) | lb[argb & 0xFF];
+                }
+                if (out != null) System.arraycopy(row, 0, out.data(), out.index(0, y), w);
+                else dst.setRGB(0, y, w, 1, row, 0, w);
+            }
+        });
+        return dst;
+    }
+
     // === Convolution ===
     public static Operation gaussianBlur(int radius) {
         if (radius <= 0) return none();
         float[] kernel = gaussianKernel(radius);
-        return separableConvolution(kernel, kernel);
+        return withHalo(radius, separableConvolution(kernel, kernel));
     }
 
     public static Operation sharpen() {
@@ -160,7 +270,40 @@ public final class Operations {
         };
         Kernel kernel = new Kernel(3,3,k);
         ConvolveOp op = new ConvolveOp(kernel, ConvolveOp.EDGE_NO_OP, null);
-        return src -> op.filter(src, null);
+        return withHalo(1, (src, dst) -> op.filter(src, target(dst, src.getWidth(), src.getHeight())));
+    }
+
+    // === Non-Linear ===
+    public static Operation median(int radius) {
+        if (radius <= 0) return none();
+        return withHalo(radius, (src, dst) -> NonLinear.median(src, radius, target(dst, src.getWidth(), src.getHeight())));
+    }
+
+    public static Operation minimum(int radius) {
+        if (radius <= 0) return none();
+        return withHalo(radius, (src, dst) -> NonLinear.minMax(src, radius, false, target(dst, src.getWidth(), src.getHeight())));
+    }
+
+    public static Operation maximum(int radius) {
+        if (radius <= 0) return none();
+        return withHalo(radius, (src, dst) -> NonLinear.minMax(src, radius, true, target(dst, src.getWidth(), src.getHeight())));
+    }
+
+    // Edge-preserving smoothing; sigmaRange is in 0..255 luminance steps.
+    public static Operation bilateral(float sigmaSpatial, float sigmaRange) {
+        return withHalo((int) Math.ceil(2 * sigmaSpatial),
+                (src, dst) -> NonLinear.bilateral(src, sigmaSpatial, sigmaRange, target(dst, src.getWidth(), src.getHeight())));
+    }
+
+    public static Operation unsharpMask(int radius, float amount, int threshold) {
+        if (radius <= 0) return none();
+        Operation blur = gaussianBlur(radius);
+        return withHalo(radius, (src, dst) -> {
+            BufferedImage soft = blur.apply(src);
+            BufferedImage out = NonLinear.unsharp(src, soft, amount, threshold, target(dst, src.getWidth(), src.getHeight()));
+            BufferPool.shared().release(soft);
+            return out;
+        });
     }
 
     private static Operation separableConvolution(float[] h, float[] v) {
@@ -168,9 +311,11 @@ public final class Operations {
         Kernel kv = new Kernel(1, v.length, v);
         ConvolveOp opH = new ConvolveOp(kh, ConvolveOp.EDGE_NO_OP, null);
         ConvolveOp opV = new ConvolveOp(kv, ConvolveOp.EDGE_NO_OP, null);
-        return src -> {
-            BufferedImage tmp = opH.filter(src, null);
-            return opV.filter(tmp, null);
+        return (src, dst) -> {
+            BufferedImage tmp = opH.filter(src, BufferPool.shared().acquire(src.getWidth(), src.getHeight()));
+            BufferedImage out = opV.filter(tmp, target(dst, src.getWidth(), src.getHeight()));
+            BufferPool.shared().release(tmp);
+            return out;
         };
     }
 
@@ -191,15 +336,18 @@ public final class Operations {
 
     // === Geometric ===
     public static Operation rotate(int degrees) {
-        return src -> {
+        return (src, out) -> {
             double theta = Math.toRadians((degrees % 360 + 360) % 360);
             int w = src.getWidth(), h = src.getHeight();
             double sin = Math.abs(Math.sin(theta)), cos = Math.abs(Math.cos(theta));
             int newW = (int) Math.floor(w * cos + h * sin);
             int newH = (int) Math.floor(h * cos + w * sin);
 
-            BufferedImage dst = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_ARGB);
+            BufferedImage dst = target(out, newW, newH);
             Graphics2D g = dst.createGraphics();
+            g.setComposite(AlphaComposite.Clear);
+            g.fillRect(0, 0, newW, newH);
+            g.setComposite(AlphaComposite.SrcOver);
             g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
             g.translate((newW - w) / 2.0, (newH - h) / 2.0);
             g.rotate(theta, w / 2.0, h / 2.0);
@@ -210,10 +358,11 @@ public final class Operations {
     }
 
     public static Operation flipH() {
-        return src -> {
+        return (src, out) -> {
             int w = src.getWidth(), h = src.getHeight();
-            BufferedImage dst = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            BufferedImage dst = target(out, w, h);
             Graphics2D g = dst.createGraphics();
+            g.setComposite(AlphaComposite.Src);
             g.scale(-1, 1);
             g.translate(-w, 0);
             g.drawImage(src, 0, 0, null);
@@ -223,10 +372,11 @@ public final class Operations {
     }
 
     public static Operation flipV() {
-        return src -> {
+        return (src, out) -> {
             int w = src.getWidth(), h = src.getHeight();
-            BufferedImage dst = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            BufferedImage dst = target(out, w, h);
             Graphics2D g = dst.createGraphics();
+            g.setComposite(AlphaComposite.Src);
             g.scale(1, -1);
             g.translate(0, -h);
             g.drawImage(src, 0, 0, null);
@@ -235,8 +385,24 @@ public final class Operations {
         };
     }
 
+    public static Operation resize(int width, int height, Resampler.Filter filter) {
+        if (width <= 0 || height <= 0) return none();
+        return (src, dst) -> src.getWidth() == width && src.getHeight() == height
+                ? src : Resampler.resize(src, width, height, filter, dst);
+    }
+
+    // Scales down to fit inside maxWidth x maxHeight keeping the aspect ratio; never enlarges.
+    public static Operation fit(int maxWidth, int maxHeight, Resampler.Filter filter) {
+        return (src, dst) -> {
+            double s = Math.min(1.0, Math.min(maxWidth / (double) src.getWidth(), maxHeight / (double) src.getHeight()));
+            int w = Math.max(1, (int) Math.round(src.getWidth() * s));
+            int h = Math.max(1, (int) Math.round(src.getHeight() * s));
+            return resize(w, h, filter).apply(src, dst);
+        };
+    }
+
     public static Operation crop(Rectangle rect) {
-        return src -> {
+        return (src, out) -> {
             int x = Math.max(0, rect.x);
             int y = Math.max(0, rect.y);
             int w = Math.min(src.getWidth() - x, rect.width);
@@ -244,14 +410,43 @@ public final class Operations {
 
             if (w <= 0 || h <= 0) return src;
 
-            BufferedImage cropped = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            BufferedImage cropped = target(out, w, h);
             Graphics2D g = cropped.createGraphics();
+            g.setComposite(AlphaComposite.Src);
             g.drawImage(src, 0, 0, w, h, x, y, x + w, y + h, null);
             g.dispose();
             return cropped;
         };
 }
 
+    // === Warm-Up ===
+    // Runs every kernel a few times on a tiny image so class loading and the first JIT tiers are paid
+    // up front instead of by the first filter the user applies.
+    public static void warmUp() {
+        var img = new BufferedImage(48, 40, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < img.getHeight(); y++) {
+            for (int x = 0; x < img.getWidth(); x++) img.setRGB(x, y, (x * 0x9E3779B1) ^ (y * 0x85EBCA6B));
+        }
+        var ops = new ArrayList<Operation>();
+        for (String name : builtInNames()) ops.add(named(name));
+        ops.addAll(List.of(brightness(0.1f), contrast(0.1f), gaussianBlur(2), sharpen(), rotate(90),
+                flipH(), flipV(), crop(new Rectangle(4, 4, 24, 24)), resize(24, 20, Resampler.Filter.BOX),
+                resize(31, 23, Resampler.Filter.MITCHELL), fit(20, 20, Resampler.Filter.LANCZOS3)));
+        for (int round = 0; round < 3; round++) {
+            for (Operation op : ops) {
+                BufferedImage out = op.apply(img);
+                if (out != img) BufferPool.shared().release(out);
+            }
+        }
+        ImageStats.of(img);
+    }
+
     // === Helpers ===
+    static BufferedImage target(BufferedImage dst, int w, int h) {
+        if (dst != null && dst.getWidth() == w && dst.getHeight() == h
+                && dst.getType() == BufferedImage.TYPE_INT_ARGB) return dst;
+        return BufferPool.shared().acquire(w, h);
+    }
+
     private static int clamp(int v) { return (v < 0) ? 0 : Math.min(v, 255); }
 }
@@ -0,0 +1,69 @@
+// === Pipeline Specs (Text Form of an Operation Chain) ===
+package processing;
+
+import java.util.ArrayList;
+import java.util.Locale;
+
+public final class Pipeline {
+    private Pipeline() {}
+
+    // Parses a comma-separated chain such as "autolevels,blur:2,fit:1024x1024,unsharp:2:0.8:4".
+    // Arguments follow the step name after ':'; sizes are written WxH.
+    public static Operations.Operation parse(String spec) {
+        var ops = new ArrayList<Operations.Operation>();
+        if (spec == null || spec.isBlank()) return Operations.none();
+        for (String step : spec.split(",")) {
+            step = step.trim();
+            if (step.isEmpty()) continue;
+            String[] parts = step.split(":");
+            ops.add(step(parts[0].toLowerCase(Locale.ROOT), parts));
+        }
+        return Operations.compose(ops.toArray(Operations.Operation[]::new));
+    }
+
+    private static Operations.Operation step(String name, String[] a) {
+        return switch (name) {
+            case "none" -> Operations.none();
+            case "grayscale" -> Operations.grayscale();
+            case "invert" -> Operations.invert();
+            case "sepia" -> Operations.sepia();
+            case "funk" -> Operations.funk();
+            case "autolevels" -> Operations.autoLevels();
+            case "autocontrast" -> Operations.autoContrast();
+            case "equalize" -> Operations.equalize();
+            case "brightness" -> Operations.brightness(floatArg(a, 1, 0f));
+            case "contrast" -> Operations.contrast(floatArg(a, 1, 0f));
+            case "blur" -> Operations.gaussianBlur(intArg(a, 1, 2));
+            case "sharpen" -> Operations.sharpen();
+            case "median" -> Operations.median(intArg(a, 1, 2));
+            case "erode" -> Operations.minimum(intArg(a, 1, 1));
+            case "dilate" -> Operations.maximum(intArg(a, 1, 1));
+            case "denoise" -> Operations.bilateral(floatArg(a, 1, 8f), floatArg(a, 2, 24f));
+            case "unsharp" -> Operations.unsharpMask(intArg(a, 1, 2), floatArg(a, 2, 0.8f), intArg(a, 3, 4));
+            case "rotate" -> Operations.rotate(intArg(a, 1, 90));
+            case "fliph" -> Operations.flipH();
+            case "flipv" -> Operations.flipV();
+            case "resize" -> Operations.resize(size(a, 0), size(a, 1), filterArg(a, 2));
+            case "fit" -> Operations.fit(size(a, 0), size(a, 1), filterArg(a, 2));
+            default -> throw new IllegalArgumentException("Unknown pipeline step: " + name);
+        };
+    }
+
+    private static int intArg(String[] a, int i, int fallback) {
+        return a.length > i ? Integer.parseInt(a[i].trim()) : fallback;
+    }
+
+    private static float floatArg(String[] a, int i, float fallback) {
+        return a.length > i ? Float.parseFloat(a[i].trim()) : fallback;
+    }
+
+    private static int size(String[] a, int axis) {
+        if (a.length < 2) throw new IllegalArgumentException("Missing size for " + a[0]);
+        String[] wh = a[1].toLowerCase(Locale.ROOT).split("x");
+        return Integer.parseInt(wh[axis].trim());
+    }
+
+    private static Resampler.Filter filterArg(String[] a, int i) {
+        return a.length > i ? Resampler.Filter.valueOf(a[i].trim().toUpperCase(Locale.ROOT)) : Resampler.Filter.LANCZOS3;
+    }
+}
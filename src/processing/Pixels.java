@@ -0,0 +1,46 @@
+// === Pixel Access (Packed ARGB Views, Parallel Row Bands) ===
+package processing;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.stream.IntStream;
+
+final class Pixels {
+    private Pixels() {}
+
+    @FunctionalInterface
+    interface Band { void run(int index, int y0, int y1); }
+
+    // Direct view of a TYPE_INT_ARGB raster (including child rasters); null for any other layout.
+    record View(int[] data, int offset, int stride) {
+        int index(int x, int y) { return offset + y * stride + x; }
+    }
+
+    static View view(BufferedImage img) {
+        if (img.getType() != BufferedImage.TYPE_INT_ARGB) return null;
+        WritableRaster r = img.getRaster();
+        if (!(r.getDataBuffer() instanceof DataBufferInt db) || db.getNumBanks() != 1) return null;
+        if (!(r.getSampleModel() instanceof SinglePixelPackedSampleModel sm)) return null;
+        int offset = db.getOffset() - r.getSampleModelTranslateY() * sm.getScanlineStride() - r.getSampleModelTranslateX();
+        return new View(db.getData(), offset, sm.getScanlineStride());
+    }
+
+    // View of img, going through a TYPE_INT_ARGB copy when the raster is not packed.
+    static View readable(BufferedImage img) {
+        View v = view(img);
+        return v != null ? v : view(Operations.toArgb(img));
+    }
+
+    static int bandCount(int rows) {
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() * 2, rows / 32));
+    }
+
+    // Splits [0, rows) into contiguous bands and runs them across the common pool.
+    static void forEachBand(int rows, Band band) {
+        int bands = bandCount(rows);
+        if (bands == 1) { band.run(0, 0, rows); return; }
+        IntStream.range(0, bands).parallel().forEach(i -> band.run(i, rows * i / bands, rows * (i + 1) / bands));
+    }
+}
@@ -0,0 +1,185 @@
+// === Resampler (Separable Resize, Integer Box Reduction) ===
+package processing;
+
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+public final class Resampler {
+    private Resampler() {}
+
+    public enum Filter {
+        BOX(0.5) {
+            @Override double weight(double x) { return x >= -0.5 && x < 0.5 ? 1 : 0; }
+        },
+        MITCHELL(2) {
+            @Override double weight(double x) {
+                final double b = 1 / 3.0, c = 1 / 3.0;
+                x = Math.abs(x);
+                if (x < 1) return ((12 - 9 * b - 6 * c) * x * x * x + (-18 + 12 * b + 6 * c) * x * x + (6 - 2 * b)) / 6;
+                if (x < 2) return ((-b - 6 * c) * x * x * x + (6 * b + 30 * c) * x * x + (-12 * b - 48 * c) * x + (8 * b + 24 * c)) / 6;
+                return 0;
+            }
+        },
+        LANCZOS3(3) {
+            @Override double weight(double x) {
+                if (x == 0) return 1;
+                if (Math.abs(x) >= 3) return 0;
+                double px = Math.PI * x;
+                return 3 * Math.sin(px) * Math.sin(px / 3) / (px * px);
+            }
+        };
+
+        final double radius;
+        Filter(double radius) { this.radius = radius; }
+        abstract double weight(double x);
+    }
+
+    // Output rows handled per task; keeps each task's horizontal intermediate small.
+    private static final int CHUNK_ROWS = 16;
+
+    // Per-axis taps: output i reads source start[i] .. start[i] + taps - 1 with weights[i * taps + k].
+    private record Weights(int[] start, int taps, float[] weights) {}
+
+    public static BufferedImage resize(BufferedImage src, int width, int height, Filter filter, BufferedImage dst) {
+        if (dst == null || dst.getWidth() != width || dst.getHeight() != height
+                || dst.getType() != BufferedImage.TYPE_INT_ARGB) {
+            dst = BufferPool.shared().acquire(width, height);
+        }
+        int sw = src.getWidth(), sh = src.getHeight();
+        if (filter == Filter.BOX && sw % width == 0 && sh % height == 0 && sw / width == sh / height) {
+            return boxReduce(src, sw / width, dst);
+        }
+        resample(src, dst, weights(sw, width, filter), weights(sh, height, filter));
+        return dst;
+    }
+
+    // === Weight Tables ===
+    private static Weights weights(int srcSize, int dstSize, Filter filter) {
+        double scale = dstSize / (double) srcSize;
+        double stretch = Math.max(1, 1 / scale);
+        double support = filter.radius * stretch;
+        int taps = Math.min(srcSize, (int) Math.ceil(support * 2) + 1);
+        int[] start = new int[dstSize];
+        float[] w = new float[dstSize * taps];
+
+        for (int i = 0; i < dstSize; i++) {
+            double center = (i + 0.5) / scale - 0.5;
+            int first = Math.max(0, Math.min(srcSize - taps, (int) Math.floor(center - support) + 1));
+            start[i] = first;
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                double v = filter.weight((first + k - center) / stretch);
+                w[i * taps + k] = (float) v;
+                sum += v;
+            }
+            if (sum == 0) {
+                int nearest = Math.max(0, Math.min(taps - 1, (int) Math.round(center) - first));
+                w[i * taps + nearest] = 1;
+            } else {
+                for (int k = 0; k < taps; k++) w[i * taps + k] /= (float) sum;
+            }
+        }
+        return new Weights(start, taps, w);
+    }
+
+    // === Separable Path ===
+    // Works in premultiplied float so transparent pixels do not bleed their colour into neighbours.
+    private static void resample(BufferedImage src, BufferedImage dst, Weights wx, Weights wy) {
+        int sw = src.getWidth(), dw = dst.getWidth(), dh = dst.getHeight();
+        Pixels.View in = Pixels.view(src), out = Pixels.view(dst);
+        int chunks = (dh + CHUNK_ROWS - 1) / CHUNK_ROWS;
+
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int y0 = chunk * CHUNK_ROWS, y1 = Math.min(dh, y0 + CHUNK_ROWS);
+            int firstRow = wy.start()[y0];
+            int lastRow = wy.start()[y1 - 1] + wy.taps();
+            float[] rows = new float[(lastRow - firstRow) * dw * 4];
+            float[] line = new float[sw * 4];
+            int[] raw = new int[Math.max(sw, dw)];
+
+            for (int sy = firstRow; sy < lastRow; sy++) {
+                if (in != null) System.arraycopy(in.data(), in.index(0, sy), raw, 0, sw);
+                else src.getRGB(0, sy, sw, 1, raw, 0, sw);
+                for (int x = 0; x < sw; x++) {
+                    int argb = raw[x];
+                    float a = (argb >>> 24) / 255f;
+                    line[x * 4] = a;
+                    line[x * 4 + 1] = ((argb >>> 16) & 0xFF) * a;
+                    line[x * 4 + 2] = ((argb >>> 8) & 0xFF) * a;
+                    line[x * 4 + 3] = (argb & 0xFF) * a;
+                }
+                int base = (sy - firstRow) * dw * 4;
+                for (int x = 0; x < dw; x++) {
+                    float a = 0, r = 0, g = 0, b = 0;
+                    int s = wx.start()[x] * 4, wi = x * wx.taps();
+                    for (int k = 0; k < wx.taps(); k++, s += 4) {
+                        float w = wx.weights()[wi + k];
+                        a += w * line[s]; r += w * line[s + 1]; g += w * line[s + 2]; b += w * line[s + 3];
+                    }
+                    int o = base + x * 4;
+                    rows[o] = a; rows[o + 1] = r; rows[o + 2] = g; rows[o + 3] = b;
+                }
+            }
+
+            for (int y = y0; y < y1; y++) {
+                int wi = y * wy.taps();
+                int rowBase = (wy.start()[y] - firstRow) * dw * 4;
+                for (int x = 0; x < dw; x++) {
+                    float a = 0, r = 0, g = 0, b = 0;
+                    for (int k = 0, s = rowBase + x * 4; k < wy.taps(); k++, s += dw * 4) {
+                        float w = wy.weights()[wi + k];
+                        a += w * rows[s]; r += w * rows[s + 1]; g += w * rows[s + 2]; b += w * rows[s + 3];
+                    }
+                    raw[x] = pack(a, r, g, b);
+                }
+                if (out != null) System.arraycopy(raw, 0, out.data(), out.index(0, y), dw);
+                else dst.setRGB(0, y, dw, 1, raw, 0, dw);
+            }
+        });
+    }
+
+    private static int pack(float a, float r, float g, float b) {
+        if (a <= 0.5f / 255f) return 0;
+        int ia = clamp(Math.round(a * 255));
+        return (ia << 24) | (clamp(Math.round(r / a)) << 16) | (clamp(Math.round(g / a)) << 8) | clamp(Math.round(b / a));
+    }
+
+    // === Integer Box Path ===
+    // Exact k:1 reduction (2x, 4x, ...) averaging each k*k block with alpha weighting in integer math.
+    private static BufferedImage boxReduce(BufferedImage src, int k, BufferedImage dst) {
+        int sw = src.getWidth(), dw = dst.getWidth(), dh = dst.getHeight();
+        Pixels.View in = Pixels.view(src), out = Pixels.view(dst);
+        int area = k * k;
+
+        Pixels.forEachBand(dh, (band, y0, y1) -> {
+            int[] raw = new int[sw * k];
+            int[] row = new int[dw];
+            for (int y = y0; y < y1; y++) {
+                for (int j = 0; j < k; j++) {
+                    if (in != null) System.arraycopy(in.data(), in.index(0, y * k + j), raw, j * sw, sw);
+                    else src.getRGB(0, y * k + j, sw, 1, raw, j * sw, sw);
+                }
+                for (int x = 0; x < dw; x++) {
+                    long sa = 0, sr = 0, sg = 0, sb = 0;
+                    for (int j = 0; j < k; j++) {
+                        for (int i = 0, p = j * sw + x * k; i < k; i++, p++) {
+                            int argb = raw[p];
+                            int a = argb >>> 24;
+                            sa += a;
+                            sr += ((argb >>> 16) & 0xFF) * a;
+                            sg += ((argb >>> 8) & 0xFF) * a;
+                            sb += (argb & 0xFF) * a;
+                        }
+                    }
+                    row[x] = sa == 0 ? 0 : (int) ((sa + area / 2) / area) << 24
+                            | (int) ((sr + sa / 2) / sa) << 16 | (int) ((sg + sa / 2) / sa) << 8 | (int) ((sb + sa / 2) / sa);
+                }
+                if (out != null) System.arraycopy(row, 0, out.data(), out.index(0, y), dw);
+                else dst.setRGB(0, y, dw, 1, row, 0, dw);
+            }
+        });
+        return dst;
+    }
+
+    private static int clamp(int v) { return (v < 0) ? 0 : Math.min(v, 255); }
+}
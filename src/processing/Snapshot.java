@@ -0,0 +1,117 @@
+// === Snapshot (Governed Image That May Live in the Swap File) ===
+package processing;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+public final class Snapshot {
+
+    private final MemoryGovernor governor;
+    private final int width, height;
+    private BufferedImage image;
+    private SwapFile.Slot slot;
+    private boolean pinned, disposed;
+
+    public Snapshot(BufferedImage image) {
+        this(image, false, MemoryGovernor.shared());
+    }
+
+    public Snapshot(BufferedImage image, boolean pinned) {
+        this(image, pinned, MemoryGovernor.shared());
+    }
+
+    Snapshot(BufferedImage image, boolean pinned, MemoryGovernor governor) {
+        this.governor = governor;
+        this.image = image;
+        this.pinned = pinned;
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        synchronized (governor) { governor.admitted(this); }
+        governor.enforce();
+    }
+
+    public int width() { return width; }
+    public int height() { return height; }
+    long bytes() { return (long) width * height * 4; }
+
+    // Pages the pixels back in if they were spilled. A spilled buffer is dropped rather than
+    // pooled, so a reference obtained here stays valid even if the snapshot is spilled later.
+    public BufferedImage image() {
+        BufferedImage img;
+        synchronized (governor) {
+            if (disposed) throw new IllegalStateException("Snapshot disposed");
+            if (image == null) pageIn();
+            governor.touched(this);
+            img = image;
+        }
+        governor.enforce();
+        return img;
+    }
+
+    public boolean isResident() { synchronized (governor) { return image != null; } }
+    public boolean isPinned() { synchronized (governor) { return pinned; } }
+
+    public void pin() { synchronized (governor) { pinned = true; } }
+
+    public void unpin() {
+        synchronized (governor) { pinned = false; }
+        governor.enforce();
+    }
+
+    public void dispose() {
+        BufferedImage img = detach();
+        if (img != null) BufferPool.shared().release(img);
+    }
+
+    // Disposes the snapshot but hands its resident raster to the caller instead of the pool;
+    // null if the pixels were spilled or the snapshot was already disposed.
+    BufferedImage detach() {
+        synchronized (governor) {
+            if (disposed) return null;
+            disposed = true;
+            BufferedImage img = image;
+            if (img != null) {
+                governor.evicted(this);
+                image = null;
+            }
+            if (slot != null) {
+                governor.swap().release(slot);
+                governor.swappedIn(this);
+                slot = null;
+            }
+            return img;
+        }
+    }
+
+    // Called by the governor with its lock held.
+    void spill() {
+        if (image == null || disposed) return;
+        Pixels.View view = Pixels.view(image);
+        if (view == null || view.stride() != width) return;
+        try {
+            slot = governor.swap().write(view.data(), view.offset(), width * height);
+        } catch (IOException e) {
+            return;
+        }
+        governor.evicted(this);
+        governor.swappedOut(this);
+        image = null;
+    }
+
+    private void pageIn() {
+        BufferedImage img = BufferPool.shared().acquire(width, height);
+        Pixels.View view = Pixels.view(img);
+        try {
+            governor.swap().read(slot, view.data(), view.offset());
+        } catch (IOException e) {
+            BufferPool.shared().release(img);
+            throw new UncheckedIOException(e);
+        }
+        governor.swap().release(slot);
+        governor.swappedIn(this);
+        slot = null;
+        image = img;
+        governor.admitted(this);
+    }
+}
@@ -0,0 +1,166 @@
+// === Swap File (Spilled Pixels on Local Disk) ===
+package processing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+final class SwapFile implements AutoCloseable {
+
+    enum Compression { RAW, DEFLATE }
+
+    record Slot(long offset, long length, int pixels, boolean compressed) {}
+
+    private static final int CHUNK = 1 << 20;
+
+    private final FileChannel channel;
+    private final Compression compression;
+    // Free extents, offset -> length, coalesced on release.
+    private final TreeMap<Long, Long> free = new TreeMap<>();
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.nativeOrder());
+    private long end;
+
+    SwapFile(Compression compression) {
+        try {
+            Path path = Files.createTempFile("imagestudio-", ".swap");
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE);
+            this.compression = compression;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    synchronized Slot write(int[] data, int offset, int count) throws IOException {
+        if (compression == Compression.DEFLATE) {
+            byte[] packed = deflate(data, offset, count);
+            long at = allocate(packed.length);
+            ByteBuffer src = ByteBuffer.wrap(packed);
+            while (src.hasRemaining()) channel.write(src, at + src.position());
+            return new Slot(at, packed.length, count, true);
+        }
+        long length = count * 4L;
+        long at = allocate(length);
+        long pos = at;
+        for (int i = 0; i < count; ) {
+            buffer.clear();
+            int n = Math.min(count - i, CHUNK / 4);
+            buffer.asIntBuffer().put(data, offset + i, n);
+            buffer.limit(n * 4);
+            while (buffer.hasRemaining()) pos += channel.write(buffer, pos);
+            i += n;
+        }
+        return new Slot(at, length, count, false);
+    }
+
+    synchronized void read(Slot slot, int[] data, int offset) throws IOException {
+        if (slot.compressed()) {
+            ByteBuffer packed = ByteBuffer.allocate((int) slot.length());
+            while (packed.hasRemaining()) {
+                if (channel.read(packed, slot.offset() + packed.position()) < 0) throw new IOException("Swap file truncated");
+            }
+            inflate(packed.array(), data, offset, slot.pixels());
+            return;
+        }
+        long pos = slot.offset();
+        for (int i = 0; i < slot.pixels(); ) {
+            int n = Math.min(slot.pixels() - i, CHUNK / 4);
+            buffer.clear().limit(n * 4);
+            while (buffer.hasRemaining()) {
+                int r = channel.read(buffer, pos);
+                if (r < 0) throw new IOException("Swap file truncated");
+                pos += r;
+            }
+            buffer.flip();
+            buffer.asIntBuffer().get(data, offset + i, n);
+            i += n;
+        }
+    }
+
+    synchronized void release(Slot slot) {
+        long at = slot.offset();
+        long length = slot.length();
+        Map.Entry<Long, Long> prev = free.floorEntry(at);
+        if (prev != null && prev.getKey() + prev.getValue() == at) {
+            at = prev.getKey();
+            length += prev.getValue();
+            free.remove(prev.getKey());
+        }
+        Long next = free.remove(at + length);
+        if (next != null) length += next;
+        if (at + length == end) end = at;
+        else free.put(at, length);
+    }
+
+    @Override public synchronized void close() throws IOException { channel.close(); }
+
+    private long allocate(long length) {
+        for (var e : free.entrySet()) {
+            if (e.getValue() >= length) {
+                // Read both before removing: TreeMap may reuse the removed entry for its successor.
+                long at = e.getKey(), extent = e.getValue();
+                free.remove(at);
+                if (extent > length) free.put(at + length, extent - length);
+                return at;
+            }
+        }
+        long at = end;
+        end += length;
+        return at;
+    }
+
+    private byte[] deflate(int[] data, int offset, int count) {
+        var deflater = new Deflater(Deflater.BEST_SPEED);
+        var out = new ByteArrayOutputStream(Math.max(64, count));
+        byte[] in = new byte[CHUNK];
+        byte[] chunk = new byte[CHUNK / 4];
+        try {
+            for (int i = 0; i < count; ) {
+                int n = Math.min(count - i, CHUNK / 4);
+                ByteBuffer.wrap(in).order(ByteOrder.nativeOrder()).asIntBuffer().put(data, offset + i, n);
+                deflater.setInput(in, 0, n * 4);
+                i += n;
+                if (i == count) deflater.finish();
+                while (!deflater.needsInput()) out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            while (!deflater.finished()) out.write(chunk, 0, deflater.deflate(chunk));
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void inflate(byte[] packed, int[] data, int offset, int count) throws IOException {
+        var inflater = new Inflater();
+        byte[] out = new byte[CHUNK];
+        try {
+            inflater.setInput(packed);
+            int done = 0;
+            while (done < count) {
+                int want = Math.min(out.length, (count - done) * 4), got = 0;
+                while (got < want) {
+                    int n = inflater.inflate(out, got, want - got);
+                    if (n == 0 && (inflater.finished() || inflater.needsInput())) throw new IOException("Swap entry corrupt");
+                    got += n;
+                }
+                ByteBuffer.wrap(out, 0, want).order(ByteOrder.nativeOrder()).asIntBuffer().get(data, offset + done, want / 4);
+                done += want / 4;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+// === Tile Storage (Governed Heap Snapshots, Off-Heap Segments, Mapped Temp Files) ===
+package processing;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+// Where TiledImage keeps tile pixels. HEAP tiles are governed snapshots that share the memory budget
+// and spill to the swap file; OFFHEAP and MAPPED tiles live outside the Java heap in fixed-size slots of
+// large native or file-backed segments, so big histories need neither a large -Xmx nor GC scanning.
+// Select with -Dimagestudio.tileStorage=heap|offheap|mapped (heap by default).
+abstract sealed class TileStore permits TileStore.Heap, TileStore.Segments {
+
+    private static final TileStore SHARED = create(System.getProperty("imagestudio.tileStorage", "heap"));
+
+    static TileStore shared() { return SHARED; }
+
+    static TileStore create(String kind) {
+        return switch (kind.toLowerCase(Locale.ROOT)) {
+            case "offheap" -> new Segments(false);
+            case "mapped" -> new Segments(true);
+            default -> new Heap();
+        };
+    }
+
+    // One tile's pixels. Implementations are safe to read from several threads at once.
+    interface Stored {
+        // Copies the tile into dst with its top-left corner at (dx, dy).
+        void copyTo(BufferedImage dst, int dx, int dy);
+        // True when the tile equals img's pixels at (x, y); false when that cannot be checked cheaply.
+        boolean matches(BufferedImage img, int x, int y);
+        // Raster of the tile positioned at (x, y) for RenderedImage readers.
+        Raster raster(int x, int y);
+        void dispose();
+    }
+
+    // Copies area of src into new storage.
+    abstract Stored store(BufferedImage src, Rectangle area);
+
+    // Bytes held outside the Java heap (0 for HEAP).
+    abstract long offHeapBytes();
+
+    // === Heap (Governed Snapshots) ===
+    static final class Heap extends TileStore {
+        @Override Stored store(BufferedImage src, Rectangle area) {
+            BufferedImage t = BufferPool.shared().acquire(area.width, area.height);
+            Operations.copyRect(src, area.x, area.y, area.width, area.height, t, 0, 0);
+            var pixels = new Snapshot(t);
+            return new Stored() {
+                @Override public void copyTo(BufferedImage dst, int dx, int dy) {
+                    Operations.copyRect(pixels.image(), 0, 0, area.width, area.height, dst, dx, dy);
+                }
+                // A spilled tile is not paged back in just to be compared.
+                @Override public boolean matches(BufferedImage img, int x, int y) {
+                    if (!pixels.isResident()) return false;
+                    Pixels.View a = Pixels.view(img), b = Pixels.view(pixels.image());
+                    if (a == null || b == null) return false;
+                    for (int row = 0; row < area.height; row++) {
+                        int ai = a.index(x, y + row), bi = b.index(0, row);
+                        if (Arrays.mismatch(a.data(), ai, ai + area.width, b.data(), bi, bi + area.width) >= 0) return false;
+                    }
+                    return true;
+                }
+                @Override public Raster raster(int x, int y) { return pixels.image().getRaster().createTranslatedChild(x, y); }
+                @Override public void dispose() { pixels.dispose(); }
+            };
+        }
+
+        @Override long offHeapBytes() { return 0; }
+    }
+
+    // === Segments (Off-Heap or Memory-Mapped Slabs) ===
+    // Every tile takes one TILE x TILE slot whatever its size; rows are packed at the tile's own width.
+    static final class Segments extends TileStore {
+        private static final long SLOT_BYTES = (long) TiledImage.TILE * TiledImage.TILE * 4;
+        private static final int SLOTS_PER_CHUNK = 256;         // 64 MB per chunk
+
+        private final class Chunk {
+            final Arena arena = Arena.ofShared();
+            final MemorySegment memory;
+            final FileChannel file;
+            final BitSet used = new BitSet(SLOTS_PER_CHUNK);
+
+            Chunk() throws IOException {
+                long size = SLOT_BYTES * SLOTS_PER_CHUNK;
+                if (mapped) {
+                    var path = Files.createTempFile("imagestudio-", ".tiles");
+                    file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                            StandardOpenOption.DELETE_ON_CLOSE);
+                    memory = file.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+                } else {
+                    file = null;
+                    memory = arena.allocate(size, 64);
+                }
+            }
+
+            void close() {
+                arena.close();
+                try { if (file != null) file.close(); } catch (IOException ignored) { }
+            }
+        }
+
+        private final boolean mapped;
+        private final List<Chunk> chunks = new ArrayList<>();
+
+        Segments(boolean mapped) { this.mapped = mapped; }
+
+        @Override synchronized long offHeapBytes() { return chunks.size() * SLOT_BYTES * SLOTS_PER_CHUNK; }
+
+        @Override Stored store(BufferedImage src, Rectangle area) {
+            Pixels.View view = Pixels.readable(src);
+            Chunk chunk;
+            int slot;
+            synchronized (this) {
+                chunk = chunks.stream().filter(c -> c.used.cardinality() < SLOTS_PER_CHUNK).findFirst().orElse(null);
+                if (chunk == null) {
+                    try { chunk = new Chunk(); } catch (IOException e) { throw new UncheckedIOException(e); }
+                    chunks.add(chunk);
+                }
+                slot = chunk.used.nextClearBit(0);
+                chunk.used.set(slot);
+            }
+            MemorySegment tile = chunk.memory.asSlice(slot * SLOT_BYTES, SLOT_BYTES);
+            int w = area.width, h = area.height;
+            for (int row = 0; row < h; row++) {
+                MemorySegment.copy(view.data(), view.index(area.x, area.y + row), tile, ValueLayout.JAVA_INT, row * w * 4L, w);
+            }
+            Chunk owner = chunk;
+            return new Stored() {
+                @Override public void copyTo(BufferedImage dst, int dx, int dy) {
+                    Pixels.View out = Pixels.view(dst);
+                    for (int row = 0; row < h; row++) {
+                        MemorySegment.copy(tile, ValueLayout.JAVA_INT, row * w * 4L, out.data(), out.index(dx, dy + row), w);
+                    }
+                }
+                @Override public boolean matches(BufferedImage img, int x, int y) {
+                    Pixels.View v = Pixels.view(img);
+                    if (v == null) return false;
+                    MemorySegment heap = MemorySegment.ofArray(v.data());
+                    for (int row = 0; row < h; row++) {
+                        long at = v.index(x, y + row) * 4L;
+                        if (MemorySegment.mismatch(tile, row * w * 4L, (row + 1) * w * 4L, heap, at, at + w * 4L) >= 0) return false;
+                    }
+                    return true;
+                }
+                @Override public Raster raster(int x, int y) {
+                    WritableRaster r = ColorModel.getRGBdefault().createCompatibleWritableRaster(w, h);
+                    int[] data = ((DataBufferInt) r.getDataBuffer()).getData();
+                    MemorySegment.copy(tile, ValueLayout.JAVA_INT, 0, data, 0, w * h);
+                    return r.createTranslatedChild(x, y);
+                }
+                @Override public void dispose() { free(owner, slot); }
+            };
+        }
+
+        // A chunk whose last slot is freed goes back to the OS, except the first, which stays for reuse.
+        private synchronized void free(Chunk chunk, int slot) {
+            chunk.used.clear(slot);
+            if (chunk.used.isEmpty() && chunks.size() > 1) {
+                chunks.remove(chunk);
+                chunk.close();
+            }
+        }
+    }
+}
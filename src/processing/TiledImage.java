@@ -0,0 +1,151 @@
+// === Tiled Image (Immutable Version Sharing Copy-on-Write Tiles) ===
+package processing;
+
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.*;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+// One version of a document's pixels, cut into TILE x TILE tiles (smaller at the right and bottom edges).
+// Versions never change once built; deriving a new version copies only the tiles that differ and shares
+// the rest, so undo history costs roughly the area that was edited. Tile pixels live in the configured
+// TileStore. Handles are reference counted: every share() needs a matching release().
+public final class TiledImage implements RenderedImage {
+
+    public static final int TILE = 256;
+
+    private static final ColorModel COLOR_MODEL = ColorModel.getRGBdefault();
+    private static final SampleModel SAMPLE_MODEL = COLOR_MODEL.createCompatibleSampleModel(TILE, TILE);
+
+    private static final class Tile {
+        final TileStore.Stored pixels;
+        final AtomicInteger refs = new AtomicInteger(1);
+        Tile(TileStore.Stored pixels) { this.pixels = pixels; }
+    }
+
+    private final int width, height, cols, rows;
+    private final Tile[] tiles;
+    private boolean released;
+
+    private TiledImage(int width, int height, Tile[] tiles) {
+        this.width = width;
+        this.height = height;
+        this.cols = (width + TILE - 1) / TILE;
+        this.rows = (height + TILE - 1) / TILE;
+        this.tiles = tiles;
+    }
+
+    // === Building Versions ===
+    public static TiledImage of(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        var tiled = new TiledImage(w, h, new Tile[((w + TILE - 1) / TILE) * ((h + TILE - 1) / TILE)]);
+        IntStream.range(0, tiled.tiles.length).parallel().forEach(i -> tiled.tiles[i] = tiled.cut(img, i));
+        return tiled;
+    }
+
+    // Next version after img was edited inside dirty (null for anywhere). Tiles outside dirty are shared;
+    // inside it, tiles whose pixels came out unchanged are shared too when that is cheap to check.
+    public TiledImage derive(BufferedImage img, Rectangle dirty) {
+        if (img.getWidth() != width || img.getHeight() != height) return of(img);
+        var next = new TiledImage(width, height, new Tile[tiles.length]);
+        IntStream.range(0, tiles.length).parallel().forEach(i -> {
+            Rectangle r = bounds(i);
+            boolean touched = dirty == null || dirty.intersects(r);
+            next.tiles[i] = !touched || tiles[i].pixels.matches(img, r.x, r.y) ? retain(tiles[i]) : cut(img, i);
+        });
+        return next;
+    }
+
+    // Another handle on the same tiles, released independently of this one.
+    public TiledImage share() {
+        for (Tile t : tiles) t.refs.incrementAndGet();
+        return new TiledImage(width, height, tiles);
+    }
+
+    public synchronized void release() {
+        if (released) return;
+        released = true;
+        for (Tile t : tiles) if (t.refs.decrementAndGet() == 0) t.pixels.dispose();
+    }
+
+    // === Tile Access ===
+    public int tileCount() { return tiles.length; }
+
+    public Rectangle bounds(int index) {
+        int x = index % cols * TILE, y = index / cols * TILE;
+        return new Rectangle(x, y, Math.min(TILE, width - x), Math.min(TILE, height - y));
+    }
+
+    // True when both versions hold the very same tile at index, so its pixels are known to be equal.
+    public boolean shares(TiledImage other, int index) {
+        return other.width == width && other.height == height && other.tiles[index] == tiles[index];
+    }
+
+    // Writes one tile into dst (a TYPE_INT_ARGB image of this size) at its own position.
+    void copyTile(int index, BufferedImage dst) {
+        Rectangle r = bounds(index);
+        tiles[index].pixels.copyTo(dst, r.x, r.y);
+    }
+
+    public void copyTo(BufferedImage dst) {
+        IntStream.range(0, tiles.length).parallel().forEach(i -> copyTile(i, dst));
+    }
+
+    private Tile cut(BufferedImage img, int index) {
+        return new Tile(TileStore.shared().store(img, bounds(index)));
+    }
+
+    private static Tile retain(Tile t) {
+        t.refs.incrementAndGet();
+        return t;
+    }
+
+    // === RenderedImage ===
+    // Lets encoders and Graphics2D read a version directly, without first assembling a full raster.
+    @Override public Vector<RenderedImage> getSources() { return null; }
+    @Override public Object getProperty(String name) { return Image.UndefinedProperty; }
+    @Override public String[] getPropertyNames() { return null; }
+    @Override public ColorModel getColorModel() { return COLOR_MODEL; }
+    @Override public SampleModel getSampleModel() { return SAMPLE_MODEL; }
+    @Override public int getWidth() { return width; }
+    @Override public int getHeight() { return height; }
+    @Override public int getMinX() { return 0; }
+    @Override public int getMinY() { return 0; }
+    @Override public int getNumXTiles() { return cols; }
+    @Override public int getNumYTiles() { return rows; }
+    @Override public int getMinTileX() { return 0; }
+    @Override public int getMinTileY() { return 0; }
+    @Override public int getTileWidth() { return TILE; }
+    @Override public int getTileHeight() { return TILE; }
+    @Override public int getTileGridXOffset() { return 0; }
+    @Override public int getTileGridYOffset() { return 0; }
+
+    // Edge tiles come back at their real size rather than padded out to TILE x TILE.
+    @Override public Raster getTile(int tileX, int tileY) {
+        return tiles[tileY * cols + tileX].pixels.raster(tileX * TILE, tileY * TILE);
+    }
+
+    @Override public Raster getData() { return getData(new Rectangle(width, height)); }
+
+    @Override public Raster getData(Rectangle rect) {
+        WritableRaster out = COLOR_MODEL.createCompatibleWritableRaster(rect.width, rect.height)
+                .createWritableTranslatedChild(rect.x, rect.y);
+        return copyData(out);
+    }
+
+    @Override public WritableRaster copyData(WritableRaster raster) {
+        WritableRaster out = raster != null ? raster : COLOR_MODEL.createCompatibleWritableRaster(width, height);
+        Rectangle area = out.getBounds().intersection(new Rectangle(width, height));
+        if (area.isEmpty()) return out;
+        for (int ty = area.y / TILE; ty <= (area.y + area.height - 1) / TILE; ty++) {
+            for (int tx = area.x / TILE; tx <= (area.x + area.width - 1) / TILE; tx++) {
+                Raster tile = getTile(tx, ty);
+                Rectangle r = tile.getBounds().intersection(area);
+                out.setRect(tile.createChild(r.x, r.y, r.width, r.height, r.x, r.y, null));
+            }
+        }
+        return out;
+    }
+}
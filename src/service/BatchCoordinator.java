@@ -0,0 +1,218 @@
+// === Batch Coordinator (Sharded Worker JVMs with a Resumable Journal) ===
+package service;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import processing.Pipeline;
+
+// Splits a manifest across N worker JVMs, each with its own small heap. Files are handed out one at a
+// time so shards balance themselves; every result is appended to "<manifest>.journal" as it arrives,
+// and a rerun skips anything the journal already records as done.
+public final class BatchCoordinator {
+
+    // A file that takes down its worker this many times is journaled as failed instead of retried.
+    private static final int MAX_CRASHES_PER_FILE = 2;
+
+    private final Path manifestPath, journalPath;
+    private final int workers, heapMb, maxRestarts;
+    private final ConcurrentLinkedQueue<Path> queue = new ConcurrentLinkedQueue<>();
+    private final Map<Path, Integer> crashes = new ConcurrentHashMap<>();
+    private final AtomicLong completed = new AtomicLong(), failed = new AtomicLong();
+    private Writer journal;
+
+    public BatchCoordinator(Path manifest, int workers, int heapMb, int maxRestarts) {
+        this.manifestPath = manifest.toAbsolutePath();
+        this.journalPath = manifestPath.resolveSibling(manifestPath.getFileName() + ".journal");
+        this.workers = Math.max(1, workers);
+        this.heapMb = heapMb;
+        this.maxRestarts = maxRestarts;
+    }
+
+    // === Command Line ===
+    // --batch <manifest> [--workers N] [--worker-heap-mb M] [--restarts R]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.err.println("Usage: --batch <manifest> [--workers N] [--worker-heap-mb M] [--restarts R]");
+            return;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        int workers = Math.max(1, cores / 4), heapMb = 1024, restarts = 3;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--workers" -> workers = Integer.parseInt(args[i + 1]);
+                case "--worker-heap-mb" -> heapMb = Integer.parseInt(args[i + 1]);
+                case "--restarts" -> restarts = Integer.parseInt(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        boolean clean = new BatchCoordinator(Path.of(args[0]), workers, heapMb, restarts).run();
+        if (!clean) System.exit(1);
+    }
+
+    // Returns true when every file in the manifest is journaled as done.
+    public boolean run() throws IOException, InterruptedException {
+        BatchManifest manifest = BatchManifest.read(manifestPath);
+        // Workers parse the same spec; a bad one would crash every worker at start-up and use up the restarts.
+        try {
+            Pipeline.parse(manifest.pipeline());
+        } catch (IllegalArgumentException e) {
+            log("invalid pipeline \"" + manifest.pipeline() + "\": " + e.getMessage());
+            return false;
+        }
+        Files.createDirectories(manifest.output());
+
+        // Sources that differ only in extension (a.png, a.jpg) would write the same output file. The first in
+        // manifest order keeps the name; the others are journaled as failed instead of silently overwriting it.
+        Map<Path, String> previous = readJournal();
+        Map<String, Path> targets = new HashMap<>();
+        var collisions = new LinkedHashMap<Path, Path>();
+        int skipped = 0;
+        for (Path file : new LinkedHashSet<>(manifest.files())) {
+            String target = ImageJobs.target(manifest.output(), file, manifest.format()).toString().toLowerCase(Locale.ROOT);
+            Path owner = targets.putIfAbsent(target, file);
+            if (owner != null) collisions.put(file, owner);
+            else if ("done".equals(previous.get(file))) skipped++;
+            else queue.add(file);
+        }
+        int total = queue.size();
+        int shards = Math.min(workers, Math.max(1, total));
+        log(manifest.files().size() + " files, " + skipped + " already done, " + total + " to process on "
+                + shards + " workers (" + heapMb + " MB heap each)");
+        if (total == 0 && collisions.isEmpty()) return true;
+
+        long start = System.nanoTime();
+        try (Writer w = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            journal = w;
+            if (Files.size(journalPath) > 0 && !endsWithNewline(journalPath)) w.write(System.lineSeparator());
+            for (var c : collisions.entrySet()) {
+                record(c.getKey(), "failed\t" + c.getKey() + "\tsame output file as " + c.getValue());
+            }
+            var threads = new ArrayList<Thread>();
+            for (int i = 0; i < shards; i++) {
+                int slot = i;
+                threads.add(Thread.ofPlatform().name("batch-shard-" + i).start(() -> drive(slot, shards)));
+            }
+            for (Thread t : threads) t.join();
+        }
+        long seconds = Math.max(1, (System.nanoTime() - start) / 1_000_000_000L);
+        int left = queue.size();
+        log("finished: done " + completed.get() + ", failed " + failed.get() + ", left " + left + " in "
+                + seconds + " s (" + completed.get() / seconds + " files/s); journal " + journalPath);
+        return failed.get() == 0 && left == 0;
+    }
+
+    // === Shard ===
+    // Keeps one worker process fed until the queue drains, relaunching it after a crash.
+    private void drive(int slot, int shards) {
+        for (int restarts = 0; !queue.isEmpty(); restarts++) {
+            if (restarts > maxRestarts) {
+                log("shard " + slot + " gave up after " + maxRestarts + " restarts");
+                return;
+            }
+            Path inFlight = null;
+            try {
+                Process process = launch(shards);
+                try (var replies = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+                     var requests = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8))) {
+                    while ((inFlight = queue.poll()) != null) {
+                        requests.write(inFlight.toString());
+                        requests.newLine();
+                        requests.flush();
+                        String reply = replies.readLine();
+                        if (reply == null) break;
+                        record(inFlight, reply);
+                        inFlight = null;
+                    }
+                } catch (IOException brokenPipe) {
+                    // Worker died mid-conversation; handled below like an early end of stream.
+                }
+                int exit = process.waitFor();
+                if (inFlight == null) return;
+                log("shard " + slot + " worker exited with " + exit + " while processing " + inFlight);
+                crashed(inFlight);
+            } catch (IOException e) {
+                log("shard " + slot + " could not start a worker: " + e.getMessage());
+                if (inFlight != null) queue.add(inFlight);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Process launch(int shards) throws IOException {
+        var command = new ArrayList<String>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-Xmx" + heapMb + "m");
+        command.add("-Djava.awt.headless=true");
+        // Shards share the machine, so each worker's parallel kernels get only its slice of the cores.
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / shards);
+        command.add("-Djava.util.concurrent.ForkJoinPool.common.parallelism=" + parallelism);
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.equals("--enable-preview") || arg.startsWith("-Dimagestudio.")) command.add(arg);
+        }
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "Main", "--batch-worker",
+                manifestPath.toString()));
+        return new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    }
+
+    private void crashed(Path file) throws IOException {
+        if (crashes.merge(file, 1, Integer::sum) >= MAX_CRASHES_PER_FILE) {
+            record(file, "failed\t" + file + "\tworker crashed " + MAX_CRASHES_PER_FILE + " times");
+        } else {
+            queue.add(file);
+        }
+    }
+
+    // === Journal ===
+    // One line per result: "done<TAB>path<TAB>millis" or "failed<TAB>path<TAB>reason". Later lines win.
+    private synchronized void record(Path file, String reply) throws IOException {
+        String[] parts = reply.split("\t", 3);
+        boolean done = parts[0].equals("done");
+        if (done) completed.incrementAndGet();
+        else {
+            failed.incrementAndGet();
+            log("failed " + file.getFileName() + ": " + (parts.length > 2 ? parts[2] : reply));
+        }
+        journal.write((done ? "done" : "failed") + "\t" + file + "\t" + (parts.length > 2 ? parts[2] : ""));
+        journal.write(System.lineSeparator());
+        journal.flush();
+    }
+
+    private Map<Path, String> readJournal() throws IOException {
+        var status = new HashMap<Path, String>();
+        if (!Files.exists(journalPath)) return status;
+        for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\t", 3);
+            // A torn last line from a killed run has no tab and is simply ignored.
+            if (parts.length >= 2) status.put(Path.of(parts[1]), parts[0]);
+        }
+        return status;
+    }
+
+    private static boolean endsWithNewline(Path file) throws IOException {
+        try (var raf = new RandomAccessFile(file.toFile(), "r")) {
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    private static void log(String message) {
+        System.out.println("[batch] " + message);
+    }
+}
@@ -0,0 +1,32 @@
+// === Batch Manifest (Pipeline Header Plus File List) ===
+package service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Text format: "pipeline:", "output:" and optional "format:" header lines, then one image path per line.
+// Blank lines and lines starting with '#' are ignored; relative paths resolve against the manifest's folder.
+public record BatchManifest(String pipeline, Path output, String format, List<Path> files) {
+
+    public static BatchManifest read(Path manifest) throws IOException {
+        String pipeline = "", format = null;
+        Path output = null;
+        var files = new ArrayList<Path>();
+        Path base = manifest.toAbsolutePath().getParent();
+        for (String line : Files.readAllLines(manifest)) {
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String lower = line.toLowerCase(Locale.ROOT);
+            if (lower.startsWith("pipeline:")) pipeline = line.substring(9).strip();
+            else if (lower.startsWith("output:")) output = base.resolve(line.substring(7).strip());
+            else if (lower.startsWith("format:")) format = line.substring(7).strip().toLowerCase(Locale.ROOT);
+            else files.add(base.resolve(line).normalize());
+        }
+        if (output == null) throw new IOException("Manifest has no output: line");
+        return new BatchManifest(pipeline, output, format, List.copyOf(files));
+    }
+}
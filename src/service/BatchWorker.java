@@ -0,0 +1,43 @@
+// === Batch Worker (One Shard Process Driven over stdin/stdout) ===
+package service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import processing.Operations;
+import processing.Pipeline;
+
+// Reads one source path per line from stdin and answers each with one journal line on stdout:
+// "done<TAB>path<TAB>millis" or "failed<TAB>path<TAB>reason". Diagnostics go to stderr.
+public final class BatchWorker {
+    private BatchWorker() {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: --batch-worker <manifest>");
+            return;
+        }
+        BatchManifest manifest = BatchManifest.read(Path.of(args[0]));
+        Operations.Operation pipeline = Pipeline.parse(manifest.pipeline());
+        Files.createDirectories(manifest.output());
+
+        var out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        var in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        for (String line; (line = in.readLine()) != null; ) {
+            if (line.isBlank()) continue;
+            Path source = Path.of(line);
+            long start = System.nanoTime();
+            try {
+                ImageJobs.run(source, pipeline, ImageJobs.target(manifest.output(), source, manifest.format()));
+                out.println("done\t" + line + "\t" + (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception e) {
+                out.println("failed\t" + line + "\t" + String.valueOf(e.getMessage()).replace('\t', ' ').replace('\n', ' '));
+            }
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+// === Derivative Export (One Decode, Downscale Cascade, Concurrent Encodes) ===
+package service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import processing.BufferPool;
+import processing.Operations;
+import processing.Pipeline;
+import processing.Resampler;
+import util.ImageIOUtils;
+import util.JpegEncoder;
+
+// Writes every requested size x format x quality of a source from a single decode and a single run of
+// the pipeline. Sizes are produced largest first, each downscaled from the one before, so the cascade
+// costs little more than the first step; each level's encodes start as soon as it exists and run
+// alongside the next resize. Output names are "<base>-<w>x<h>.png" and "<base>-<w>x<h>-q<NN>.jpg".
+public final class DerivativeExport implements AutoCloseable {
+
+    // Longest edge in pixels (0 for full size); quality applies to jpg only.
+    public record Variant(int maxEdge, String format, float quality) {}
+
+    public record Written(Path path, int width, int height, long bytes) {}
+
+    private final Operations.Operation pipeline;
+    private final List<Variant> variants;
+    private final Resampler.Filter filter;
+    private final ExecutorService encoders;
+
+    public DerivativeExport(Operations.Operation pipeline, List<Variant> variants, Resampler.Filter filter) {
+        this.pipeline = pipeline;
+        this.variants = variants;
+        this.filter = filter;
+        this.encoders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    // === Command Line ===
+    // --derivatives <input file or dir> <output-dir> [--sizes full,2048,1024] [--formats jpg,png]
+    //               [--qualities 0.9,0.75] [--pipeline spec] [--filter lanczos3|mitchell|box]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: --derivatives <input> <output-dir> [--sizes full,2048,1024] [--formats jpg,png]"
+                    + " [--qualities 0.9,0.75] [--pipeline spec] [--filter lanczos3|mitchell|box]");
+            return;
+        }
+        String sizes = "full,1920,1280,640,320", formats = "jpg", qualities = "0.85", spec = "";
+        var filter = Resampler.Filter.LANCZOS3;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--sizes" -> sizes = args[i + 1];
+                case "--formats" -> formats = args[i + 1];
+                case "--qualities" -> qualities = args[i + 1];
+                case "--pipeline" -> spec = args[i + 1];
+                case "--filter" -> filter = Resampler.Filter.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        Path input = Path.of(args[0]), output = Path.of(args[1]);
+        List<Path> sources;
+        if (Files.isDirectory(input)) {
+            try (var files = Files.list(input)) {
+                sources = files.filter(f -> ImageIOUtils.isReadableImageName(f.getFileName().toString())).sorted().toList();
+            }
+        } else {
+            sources = List.of(input);
+        }
+        Files.createDirectories(output);
+
+        int failures = 0;
+        try (var export = new DerivativeExport(Pipeline.parse(spec), variants(sizes, formats, qualities), filter)) {
+            for (Path source : sources) {
+                long start = System.nanoTime();
+                try {
+                    List<Written> written = export.export(source, output);
+                    long bytes = written.stream().mapToLong(Written::bytes).sum();
+                    System.out.println(source.getFileName() + ": " + written.size() + " files, " + (bytes >> 10) + " KB in "
+                            + (System.nanoTime() - start) / 1_000_000 + " ms");
+                } catch (Exception e) {
+                    failures++;
+                    System.err.println(source.getFileName() + ": failed: " + e.getMessage());
+                }
+            }
+        }
+        if (failures > 0) System.exit(1);
+    }
+
+    // Every combination of the comma-separated lists; png ignores qualities and appears once per size.
+    static List<Variant> variants(String sizes, String formats, String qualities) {
+        var out = new ArrayList<Variant>();
+        for (String s : sizes.split(",")) {
+            s = s.trim().toLowerCase(Locale.ROOT);
+            int edge = s.equals("full") ? 0 : Integer.parseInt(s);
+            if (edge < 0) throw new IllegalArgumentException("Negative size: " + s);
+            for (String f : formats.split(",")) {
+                String format = f.trim().toLowerCase(Locale.ROOT);
+                switch (format) {
+                    case "png" -> out.add(new Variant(edge, "png", 1f));
+                    case "jpg", "jpeg" -> {
+                        for (String q : qualities.split(",")) out.add(new Variant(edge, "jpg", Float.parseFloat(q.trim())));
+                    }
+                    default -> throw new IllegalArgumentException("Unsupported format: " + f);
+                }
+            }
+        }
+        return out.stream().distinct().toList();
+    }
+
+    // === Export ===
+    public List<Written> export(Path source, Path outputDir) throws IOException {
+        BufferedImage decoded = ImageIOUtils.readImage(source.toFile()).orElseThrow(() -> new IOException("Unreadable image"));
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+
+        BufferedImage argb = Operations.toArgb(decoded);
+        BufferedImage full = pipeline.apply(argb);
+        int fw = full.getWidth(), fh = full.getHeight(), longest = Math.max(fw, fh);
+
+        // Largest first, so every level can be derived from the one before it; sizes at or above full collapse into it.
+        // Variants that end up with the same file name after that (full and 4096 on a 2000-px image, or qualities
+        // that round to the same q<NN>) are encoded once.
+        var byEdge = new TreeMap<Integer, List<Variant>>(Comparator.reverseOrder());
+        var names = new HashSet<String>();
+        for (Variant v : variants) {
+            int edge = v.maxEdge() == 0 ? longest : Math.min(v.maxEdge(), longest);
+            if (!names.add(edge + suffix(v))) continue;
+            byEdge.computeIfAbsent(edge, _ -> new ArrayList<>()).add(v);
+        }
+
+        var pending = new ArrayList<CompletableFuture<Written>>();
+        var releases = new ArrayList<CompletableFuture<?>>();
+        BufferedImage level = full;
+        List<CompletableFuture<Written>> levelEncodes = new ArrayList<>();
+        try {
+            for (var entry : byEdge.entrySet()) {
+                int w = Math.max(1, (int) Math.round((double) fw * entry.getKey() / longest));
+                int h = Math.max(1, (int) Math.round((double) fh * entry.getKey() / longest));
+                if (w != level.getWidth() || h != level.getHeight()) {
+                    BufferedImage next = Resampler.resize(level, w, h, filter, null);
+                    releaseAfter(level, levelEncodes, full, argb, releases);
+                    level = next;
+                    levelEncodes = new ArrayList<>();
+                }
+                List<CompletableFuture<Written>> encodes = encode(level, entry.getValue(), outputDir, base);
+                levelEncodes.addAll(encodes);
+                pending.addAll(encodes);
+            }
+            releaseAfter(level, levelEncodes, full, argb, releases);
+
+            var written = new ArrayList<Written>();
+            for (var f : pending) written.add(f.join());
+            return written;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+            throw e;
+        } finally {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).exceptionally(_ -> null).join();
+            releases.forEach(r -> r.exceptionally(_ -> null).join());
+            if (full != argb) BufferPool.shared().release(full);
+        }
+    }
+
+    // A cascade level goes back to the pool once the next level has been read from it and its own encodes
+    // are done. The full-size image is released by the caller.
+    private static void releaseAfter(BufferedImage level, List<CompletableFuture<Written>> encodes, BufferedImage full,
+                                     BufferedImage argb, List<CompletableFuture<?>> releases) {
+        if (level == full || level == argb) return;
+        releases.add(CompletableFuture.allOf(encodes.toArray(CompletableFuture[]::new))
+                .handle((_, _) -> { BufferPool.shared().release(level); return null; }));
+    }
+
+    // Starts one level's encodes. All JPEG qualities share one opaque RGB copy of the level.
+    private List<CompletableFuture<Written>> encode(BufferedImage level, List<Variant> wanted, Path outputDir, String base) {
+        int w = level.getWidth(), h = level.getHeight();
+        String stem = base + "-" + w + "x" + h;
+        var out = new ArrayList<CompletableFuture<Written>>();
+        CompletableFuture<BufferedImage> rgb = null;
+        for (Variant v : wanted) {
+            if (v.format().equals("png")) {
+                Path target = outputDir.resolve(stem + suffix(v));
+                out.add(async(() -> write(target, temp -> ImageIOUtils.writePng(level, temp.toFile()), w, h)));
+            } else {
+                if (rgb == null) rgb = CompletableFuture.supplyAsync(() -> JpegEncoder.opaqueRgb(level), encoders);
+                Path target = outputDir.resolve(stem + suffix(v));
+                var options = JpegEncoder.Options.quality(v.quality());
+                out.add(rgb.thenApplyAsync(img -> write(target,
+                        temp -> ImageIOUtils.writeJpeg(img, temp.toFile(), options).isPresent(), w, h), encoders));
+            }
+        }
+        return out;
+    }
+
+    // File name after "<base>-<w>x<h>".
+    private static String suffix(Variant v) {
+        return v.format().equals("png") ? ".png" : "-q" + Math.round(v.quality() * 100) + ".jpg";
+    }
+
+    private CompletableFuture<Written> async(Supplier<Written> task) {
+        return CompletableFuture.supplyAsync(task, encoders);
+    }
+
+    private static Written write(Path target, ImageJobs.Encoder encoder, int w, int h) {
+        try {
+            ImageJobs.writeAtomically(target, encoder);
+            return new Written(target, w, h, Files.size(target));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override public void close() { encoders.shutdown(); }
+}
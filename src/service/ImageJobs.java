@@ -0,0 +1,53 @@
+// === Image Jobs (Decode, Pipeline, Atomic Output) ===
+package service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import processing.BufferPool;
+import processing.Operations;
+import util.ImageIOUtils;
+
+final class ImageJobs {
+    private ImageJobs() {}
+
+    // Decodes source, runs pipeline and writes the result to target.
+    static void run(Path source, Operations.Operation pipeline, Path target) throws IOException {
+        BufferedImage src = ImageIOUtils.readImage(source.toFile()).orElseThrow(() -> new IOException("Unreadable image"));
+        BufferedImage argb = Operations.toArgb(src);
+        BufferedImage result = pipeline.apply(argb);
+        write(result, target);
+        if (result != argb) BufferPool.shared().release(result);
+    }
+
+    // Keeps the source base name; format null keeps the source extension, anything unwritable becomes png.
+    static Path target(Path outputDir, Path source, String format) {
+        String name = source.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String ext = format != null ? format : dot > 0 ? name.substring(dot + 1).toLowerCase(Locale.ROOT) : "png";
+        if (!ext.equals("png") && !ext.equals("jpg") && !ext.equals("jpeg")) ext = "png";
+        return outputDir.resolve(base + "." + ext);
+    }
+
+    // Writes beside the target under a hidden name, then renames, so readers never see partial files.
+    static void write(BufferedImage image, Path target) throws IOException {
+        writeAtomically(target, temp -> ImageIOUtils.writeAuto(image, temp.toFile()));
+    }
+
+    interface Encoder { boolean write(Path temp) throws IOException; }
+
+    static void writeAtomically(Path target, Encoder encoder) throws IOException {
+        String name = target.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        Path temp = target.resolveSibling("." + name.substring(0, dot) + ".part" + name.substring(dot));
+        if (!encoder.write(temp)) {
+            Files.deleteIfExists(temp);
+            throw new IOException("Write failed");
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
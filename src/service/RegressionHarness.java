@@ -0,0 +1,511 @@
+// === Regression Harness (Golden Images, Document Invariants, Throughput Gate) ===
+package service;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import processing.BufferPool;
+import processing.ImageProcessor;
+import processing.ImageStats;
+import processing.MemoryGovernor;
+import processing.Operations;
+import processing.Pipeline;
+import processing.Snapshot;
+import processing.TiledImage;
+import util.ImageIOUtils;
+
+// Headless checks run with "--regress record|verify". Three suites:
+//   golden  every operation on every synthetic input, compared per pixel against stored PNGs
+//   doc     ImageProcessor invariants: apply/undo/redo/revert, region edits, snapshots, incremental stats
+//   perf    throughput of each kernel on a fixed input, compared against a stored baseline; only run when
+//           named in --suites, since baselines are machine specific and none is committed
+// record rewrites the goldens and the baseline from the current code; verify exits non-zero on any failure.
+// The committed goldens were not recorded from these kernels: operations that predate the tiled pipeline
+// come from the original per-pixel code, the rest from brute-force references. Re-record only for an
+// intended change.
+public final class RegressionHarness {
+
+    private record Case(String name, Operations.Operation op) {}
+    private record Input(String name, BufferedImage image) {}
+
+    // Every step Pipeline knows, with arguments that reach the interesting branches, plus crop.
+    private static final List<String> SPECS = List.of(
+            "grayscale", "invert", "sepia", "funk", "brightness:0.25", "brightness:-0.4", "contrast:0.4", "contrast:-0.3",
+            "autolevels", "autocontrast", "equalize", "blur:1", "blur:3", "sharpen", "median:1", "median:2",
+            "erode:1", "dilate:2", "denoise:8:24", "unsharp:2:0.8:4", "rotate:90", "rotate:180", "rotate:270",
+            "fliph", "flipv", "resize:13x7:box", "resize:13x7:mitchell", "resize:13x7:lanczos3", "resize:80x61:lanczos3",
+            "fit:16x16:lanczos3", "autolevels,blur:2,unsharp:2:0.8:4");
+
+    // Mean channel error allowed against the exact filter's golden; the bilateral grid stays within about 3.5.
+    private static final Map<String, Double> APPROXIMATE = Map.of("denoise:8:24", 4.0);
+
+    // Ops whose region result must equal the whole-image result inside the region: pixelwise ops and
+    // kernels whose halo covers their support. Global ops (levels, equalize) depend on the region's own stats.
+    private static final List<String> REGION_SPECS = List.of(
+            "grayscale", "invert", "sepia", "brightness:0.25", "contrast:0.4", "blur:3", "sharpen", "median:2",
+            "erode:1", "dilate:2", "unsharp:2:0.8:4");
+
+    private static final List<String> PERF_SPECS = List.of(
+            "grayscale", "invert", "sepia", "brightness:0.25", "contrast:0.4", "autolevels", "equalize", "blur:3",
+            "sharpen", "median:2", "erode:1", "denoise:8:24", "unsharp:2:0.8:4", "rotate:90", "fliph",
+            "resize:512x384:lanczos3", "resize:512x384:box", "fit:300x300:mitchell");
+
+    // The default budget never spills, so the document checks run a second time with history forced
+    // through the swap file.
+    private static final long LOW_BUDGET = 1 << 20;
+    private static final int SWAP_ROUNDS = 4000;
+    private static final int CONCURRENT_EDITS = 5000;
+
+    private static final int PERF_WIDTH = 1024, PERF_HEIGHT = 768;
+    private static final long PERF_WARMUP_NANOS = 300_000_000L, PERF_MEASURE_NANOS = 1_000_000_000L;
+    private static final int PERF_MIN_RUNS = 5;
+
+    private final Path dir;
+    private final boolean record;
+    private final int tolerance;
+    private final double threshold;
+    private int checks, failures;
+
+    RegressionHarness(Path dir, boolean record, int tolerance, double threshold) {
+        this.dir = dir;
+        this.record = record;
+        this.tolerance = tolerance;
+        this.threshold = threshold;
+    }
+
+    // === Command Line ===
+    // --regress record|verify [--dir regression] [--suites golden,doc[,perf]] [--tolerance 1] [--threshold 0.25]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || !Set.of("record", "verify").contains(args[0])) {
+            System.err.println("Usage: --regress record|verify [--dir regression] [--suites golden,doc[,perf]]"
+                    + " [--tolerance 1] [--threshold 0.25]");
+            System.exit(2);
+        }
+        Path dir = Path.of("regression");
+        String suites = "golden,doc";
+        int tolerance = 1;
+        double threshold = 0.25;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--dir" -> dir = Path.of(args[i + 1]);
+                case "--suites" -> suites = args[i + 1].toLowerCase(Locale.ROOT);
+                case "--tolerance" -> tolerance = Integer.parseInt(args[i + 1]);
+                case "--threshold" -> threshold = Double.parseDouble(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        var harness = new RegressionHarness(dir, args[0].equals("record"), tolerance, threshold);
+        for (String suite : suites.split(",")) {
+            switch (suite.trim()) {
+                case "golden" -> harness.golden();
+                case "doc" -> harness.document();
+                case "perf" -> harness.perf();
+                default -> throw new IllegalArgumentException("Unknown suite: " + suite);
+            }
+        }
+        System.out.println("[regress] " + harness.checks + " checks, " + harness.failures + " failed");
+        System.exit(harness.failures == 0 ? 0 : 1);
+    }
+
+    // === Synthetic Inputs ===
+    // Odd sizes, single rows and columns, a width that does not divide into tiles, every stock raster
+    // type the loader meets, and alpha at 0, 1, 254 and 255 with colour left under transparent pixels.
+    static List<Input> inputs() {
+        return List.of(
+                new Input("rgb-64x48", synthetic(64, 48, BufferedImage.TYPE_INT_RGB, 1, false)),
+                new Input("bgr-257x19", synthetic(257, 19, BufferedImage.TYPE_3BYTE_BGR, 2, false)),
+                new Input("gray-31x17", synthetic(31, 17, BufferedImage.TYPE_BYTE_GRAY, 3, false)),
+                new Input("indexed-33x21", synthetic(33, 21, BufferedImage.TYPE_BYTE_INDEXED, 4, false)),
+                new Input("argb-edges-40x33", synthetic(40, 33, BufferedImage.TYPE_INT_ARGB, 5, true)),
+                new Input("abgr-pre-23x29", synthetic(23, 29, BufferedImage.TYPE_4BYTE_ABGR_PRE, 6, true)),
+                new Input("col-1x37", synthetic(1, 37, BufferedImage.TYPE_INT_ARGB, 7, true)),
+                new Input("row-37x1", synthetic(37, 1, BufferedImage.TYPE_INT_ARGB, 8, true)),
+                new Input("dot-1x1", synthetic(1, 1, BufferedImage.TYPE_INT_ARGB, 9, false)));
+    }
+
+    // Smooth gradients with a sharp-edged block and a small noisy patch, so kernels see flat areas,
+    // edges and texture while the golden PNGs stay small. Deterministic for a given seed.
+    static BufferedImage synthetic(int w, int h, int type, long seed, boolean alphaEdges) {
+        var img = new BufferedImage(w, h, type);
+        var random = new SplittableRandom(seed);
+        int[] alphas = {0, 1, 254, 255, 128};
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int r = x * 255 / Math.max(1, w - 1), g = y * 255 / Math.max(1, h - 1), b = (x + y) * 7 & 0xFF;
+                if (x >= w / 4 && x < w / 2 && y >= h / 4 && y < h / 2) { r = 250; g = 20; b = 60; }
+                if (x < 8 && y < 8) { r = random.nextInt(256); g = random.nextInt(256); b = random.nextInt(256); }
+                int a = 255;
+                if (alphaEdges) {
+                    if (x % 5 == 0 || y % 7 == 0) a = alphas[(x + y) % alphas.length];
+                    else if (x > w * 3 / 4) a = 0;
+                }
+                img.setRGB(x, y, a << 24 | r << 16 | g << 8 | b);
+            }
+        }
+        return img;
+    }
+
+    private static List<Case> cases() {
+        var cases = new ArrayList<Case>();
+        for (String spec : SPECS) cases.add(new Case(spec, Pipeline.parse(spec)));
+        cases.add(new Case("crop", Operations.crop(new Rectangle(3, 2, 20, 11))));
+        return cases;
+    }
+
+    // === Golden Suite ===
+    void golden() throws IOException {
+        Path goldenDir = dir.resolve("golden");
+        Files.createDirectories(goldenDir);
+        int before = failures;
+        for (Input input : inputs()) {
+            BufferedImage argb = Operations.toArgb(input.image());
+            for (Case c : cases()) {
+                BufferedImage out = c.op().apply(argb);
+                Path file = goldenDir.resolve(fileName(c.name()) + "__" + input.name() + ".png");
+                if (record) {
+                    if (!ImageIOUtils.writePng(out, file.toFile())) throw new IOException("Cannot write " + file);
+                } else {
+                    check("golden", c.name() + " on " + input.name(), compare(out, file, APPROXIMATE.get(c.name())));
+                }
+                if (out != argb) BufferPool.shared().release(out);
+            }
+        }
+        report("golden", record ? "recorded " + inputs().size() * cases().size() + " images in " + goldenDir
+                : (failures - before) + " failed");
+    }
+
+    // Null when out matches the golden within tolerance on every channel (or within the mean budget of an
+    // approximate kernel), else what went wrong.
+    private String compare(BufferedImage out, Path golden, Double meanBudget) {
+        var expected = ImageIOUtils.readImage(golden.toFile());
+        if (expected.isEmpty()) return "missing golden " + golden.getFileName();
+        return meanBudget == null ? diff(expected.get(), out, tolerance) : meanDiff(expected.get(), out, meanBudget);
+    }
+
+    static String diff(BufferedImage expected, BufferedImage actual, int tolerance) {
+        int w = expected.getWidth(), h = expected.getHeight();
+        if (actual.getWidth() != w || actual.getHeight() != h) {
+            return "size " + actual.getWidth() + "x" + actual.getHeight() + ", expected " + w + "x" + h;
+        }
+        int[] e = expected.getRGB(0, 0, w, h, null, 0, w), a = actual.getRGB(0, 0, w, h, null, 0, w);
+        int bad = 0, worst = 0, at = -1;
+        for (int i = 0; i < e.length; i++) {
+            int d = 0;
+            for (int shift = 0; shift < 32; shift += 8) {
+                d = Math.max(d, Math.abs((e[i] >>> shift & 0xFF) - (a[i] >>> shift & 0xFF)));
+            }
+            if (d > tolerance) bad++;
+            if (d > worst) { worst = d; at = i; }
+        }
+        if (bad == 0) return null;
+        return bad + " of " + e.length + " pixels off by more than " + tolerance + " (max " + worst
+                + " at " + at % w + "," + at / w + ")";
+    }
+
+    static String meanDiff(BufferedImage expected, BufferedImage actual, double budget) {
+        int w = expected.getWidth(), h = expected.getHeight();
+        if (actual.getWidth() != w || actual.getHeight() != h) {
+            return "size " + actual.getWidth() + "x" + actual.getHeight() + ", expected " + w + "x" + h;
+        }
+        int[] e = expected.getRGB(0, 0, w, h, null, 0, w), a = actual.getRGB(0, 0, w, h, null, 0, w);
+        long sum = 0;
+        for (int i = 0; i < e.length; i++) {
+            for (int shift = 0; shift < 32; shift += 8) sum += Math.abs((e[i] >>> shift & 0xFF) - (a[i] >>> shift & 0xFF));
+        }
+        double mean = sum / (4.0 * e.length);
+        return mean <= budget ? null : String.format(Locale.ROOT, "mean channel error %.2f, budget %.2f", mean, budget);
+    }
+
+    private static String fileName(String spec) {
+        return spec.replace(':', '_').replace(',', '+');
+    }
+
+    // === Document Suite ===
+    // Checks ImageProcessor against the operations applied directly, on an image that spans several tiles
+    // with partial tiles at the right and bottom edges; then again under a budget that spills history.
+    void document() {
+        int before = failures;
+        documentChecks("");
+        concurrentReads();
+        var governor = MemoryGovernor.shared();
+        long budget = governor.budget();
+        try {
+            governor.setBudget(LOW_BUDGET);
+            documentChecks(" (" + (LOW_BUDGET >> 20) + " MB budget)");
+            governor.setBudget(0);
+            swapReuse();
+        } finally {
+            governor.setBudget(budget);
+        }
+        report("doc", (failures - before) + " failed");
+    }
+
+    private void documentChecks(String label) {
+        BufferedImage source = Operations.toArgb(synthetic(TiledImage.TILE * 2 + 37, TiledImage.TILE + 45,
+                BufferedImage.TYPE_INT_ARGB, 11, true));
+        var roi = new Rectangle(TiledImage.TILE - 40, TiledImage.TILE - 30, 120, 70);
+
+        for (String spec : SPECS) {
+            Operations.Operation op = Pipeline.parse(spec);
+            BufferedImage expected = op.apply(source);
+            var doc = new ImageProcessor();
+            try {
+                doc.load(source, null);
+                doc.apply(op);
+                check("doc", spec + ": apply" + label, diff(expected, doc.getImage(), 0));
+                check("doc", spec + ": snapshot" + label, snapshotDiff(doc, expected));
+                doc.undo();
+                check("doc", spec + ": undo" + label, diff(source, doc.getImage(), 0));
+                doc.redo();
+                check("doc", spec + ": redo" + label, diff(expected, doc.getImage(), 0));
+                doc.revert();
+                check("doc", spec + ": revert" + label, diff(source, doc.getImage(), 0));
+                doc.undo();
+                check("doc", spec + ": undo revert" + label, diff(expected, doc.getImage(), 0));
+            } finally {
+                doc.dispose();
+                if (expected != source) BufferPool.shared().release(expected);
+            }
+        }
+
+        for (String spec : REGION_SPECS) {
+            Operations.Operation op = Pipeline.parse(spec);
+            BufferedImage whole = op.apply(source);
+            BufferedImage expected = Operations.copyOf(source);
+            Operations.copyRect(whole, roi.x, roi.y, roi.width, roi.height, expected, roi.x, roi.y);
+            var doc = new ImageProcessor();
+            try {
+                doc.load(source, null);
+                doc.applyRegion(op, roi);
+                check("doc", spec + ": region" + label, diff(expected, doc.getImage(), 0));
+                check("doc", spec + ": region stats" + label, statsDiff(doc.statistics(), ImageStats.of(expected)));
+                doc.undo();
+                check("doc", spec + ": region undo" + label, diff(source, doc.getImage(), 0));
+            } finally {
+                doc.dispose();
+                if (whole != source) BufferPool.shared().release(whole);
+            }
+        }
+
+        // Stats kept up to date region by region must equal a full recount.
+        var stats = ImageStats.of(source);
+        BufferedImage edited = Operations.copyOf(source);
+        stats.remove(edited, roi);
+        BufferedImage inverted = Operations.invert().apply(source);
+        Operations.copyRect(inverted, roi.x, roi.y, roi.width, roi.height, edited, roi.x, roi.y);
+        stats.add(edited, roi);
+        check("doc", "incremental stats" + label, statsDiff(stats, ImageStats.of(edited)));
+        BufferPool.shared().release(inverted);
+    }
+
+    // The canvas reads getImage() on the EDT while a worker applies edits; no read may hit a disposed snapshot.
+    private void concurrentReads() {
+        var doc = new ImageProcessor();
+        doc.load(synthetic(64, 48, BufferedImage.TYPE_INT_ARGB, 21, false), null);
+        var stop = new AtomicBoolean();
+        var errors = new AtomicInteger();
+        Thread reader = Thread.ofPlatform().start(() -> {
+            while (!stop.get()) {
+                try {
+                    doc.getImage().getRGB(0, 0);
+                } catch (RuntimeException e) {
+                    errors.incrementAndGet();
+                }
+            }
+        });
+        try {
+            for (int i = 0; i < CONCURRENT_EDITS; i++) doc.apply(Operations.invert());
+        } finally {
+            stop.set(true);
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            doc.dispose();
+        }
+        check("doc", "concurrent reads", errors.get() == 0 ? null : errors.get() + " of the reader's calls failed");
+    }
+
+    // Small snapshots written to the swap file and released in random order, each read back first, so free
+    // extents are split, coalesced and reused many times over.
+    private void swapReuse() {
+        var random = new SplittableRandom(13);
+        var live = new ArrayList<Snapshot>();
+        var contents = new ArrayList<int[]>();
+        String problem = null;
+        for (int i = 0; i < SWAP_ROUNDS && problem == null; i++) {
+            if (live.isEmpty() || random.nextInt(3) != 0) {
+                int w = 1 + random.nextInt(25), h = 1 + random.nextInt(20);
+                int[] pixels = random.ints(w * h).toArray();
+                BufferedImage img = BufferPool.shared().acquire(w, h);
+                img.setRGB(0, 0, w, h, pixels, 0, w);
+                live.add(new Snapshot(img));
+                contents.add(pixels);
+            } else {
+                int k = random.nextInt(live.size());
+                Snapshot s = live.remove(k);
+                problem = readBack(s, contents.remove(k), i);
+                s.dispose();
+            }
+        }
+        for (int k = 0; k < live.size(); k++) {
+            if (problem == null) problem = readBack(live.get(k), contents.get(k), SWAP_ROUNDS);
+            live.get(k).dispose();
+        }
+        check("doc", "swap reuse", problem);
+    }
+
+    private static String readBack(Snapshot s, int[] expected, int round) {
+        BufferedImage img = s.image();
+        int w = img.getWidth(), h = img.getHeight();
+        int[] actual = img.getRGB(0, 0, w, h, null, 0, w);
+        for (int p = 0; p < expected.length; p++) {
+            if (actual[p] != expected[p]) return w + "x" + h + " snapshot differs at pixel " + p + " after " + round + " rounds";
+        }
+        return null;
+    }
+
+    private static String snapshotDiff(ImageProcessor doc, BufferedImage expected) {
+        TiledImage snapshot = doc.snapshot();
+        try {
+            var copy = new BufferedImage(snapshot.getWidth(), snapshot.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            snapshot.copyTo(copy);
+            String tiles = diff(expected, copy, 0);
+            if (tiles != null) return "copyTo: " + tiles;
+            var raster = new BufferedImage(snapshot.getColorModel(), snapshot.copyData(null), false, null);
+            String rendered = diff(expected, raster, 0);
+            return rendered == null ? null : "copyData: " + rendered;
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    private static String statsDiff(ImageStats actual, ImageStats expected) {
+        if (actual.pixelCount() != expected.pixelCount()) {
+            return "pixel count " + actual.pixelCount() + ", expected " + expected.pixelCount();
+        }
+        for (int channel = ImageStats.RED; channel <= ImageStats.LUMA; channel++) {
+            for (int v = 0; v < 256; v++) {
+                if (actual.count(channel, v) != expected.count(channel, v)) {
+                    return "channel " + channel + " count at " + v + " is " + actual.count(channel, v)
+                            + ", expected " + expected.count(channel, v);
+                }
+            }
+        }
+        return null;
+    }
+
+    // === Perf Suite ===
+    // Best-of-N megapixels per second for each kernel. Baselines are machine specific: record on the
+    // machine that runs the gate, and re-record when the hardware or JVM changes.
+    void perf() throws IOException {
+        Path baselineFile = dir.resolve("perf-baseline.properties");
+        var baseline = new Properties();
+        if (!record && Files.exists(baselineFile)) {
+            try (Reader in = Files.newBufferedReader(baselineFile, StandardCharsets.UTF_8)) { baseline.load(in); }
+        }
+        // A gate without a baseline would pass whatever the kernels do, so it fails instead.
+        if (!record && baseline.isEmpty()) {
+            check("perf", "baseline", "none at " + baselineFile + "; run --regress record --suites perf on this machine");
+            return;
+        }
+
+        BufferedImage input = Operations.toArgb(synthetic(PERF_WIDTH, PERF_HEIGHT, BufferedImage.TYPE_INT_RGB, 42, false));
+        Map<String, Operations.Operation> kernels = new LinkedHashMap<>();
+        for (String spec : PERF_SPECS) kernels.put(spec, Pipeline.parse(spec));
+        kernels.put("stats", (src, _) -> { ImageStats.of(src); return src; });
+        Map<String, Double> measured = new LinkedHashMap<>();
+        kernels.forEach((name, op) -> measured.put(name, throughput(op, input)));
+        // A kernel that looks slower gets one more measurement before it counts, so a noisy moment on a
+        // shared machine does not fail the gate on its own.
+        if (!record) {
+            kernels.forEach((name, op) -> {
+                String stored = baseline.getProperty(name);
+                if (stored != null && measured.get(name) < Double.parseDouble(stored) * (1 - threshold)) {
+                    measured.put(name, Math.max(measured.get(name), throughput(op, input)));
+                }
+            });
+        }
+
+        for (var e : measured.entrySet()) {
+            String line = String.format(Locale.ROOT, "%-26s %8.1f MP/s", e.getKey(), e.getValue());
+            String stored = baseline.getProperty(e.getKey());
+            if (record) {
+                report("perf", line);
+                continue;
+            }
+            if (stored == null) {
+                check("perf", e.getKey(), String.format(Locale.ROOT, "%.1f MP/s, no baseline entry; re-record the baseline",
+                        e.getValue()));
+                continue;
+            }
+            double base = Double.parseDouble(stored), change = e.getValue() / base - 1;
+            if (change < -threshold) {
+                check("perf", e.getKey(), String.format(Locale.ROOT, "%.1f MP/s, baseline %.1f (%+.0f%%, limit -%.0f%%)",
+                        e.getValue(), base, change * 100, threshold * 100));
+            } else {
+                check("perf", e.getKey(), null);
+                report("perf", line + String.format(Locale.ROOT, "  baseline %8.1f  %+4.0f%%", base, change * 100));
+            }
+        }
+
+        if (record) {
+            Files.createDirectories(dir);
+            var sorted = new TreeMap<String, String>();
+            measured.forEach((k, v) -> sorted.put(k, String.format(Locale.ROOT, "%.1f", v)));
+            try (Writer out = Files.newBufferedWriter(baselineFile, StandardCharsets.UTF_8)) {
+                out.write("# Megapixels per second on a " + PERF_WIDTH + "x" + PERF_HEIGHT + " input; "
+                        + Runtime.getRuntime().availableProcessors() + " cores, Java " + Runtime.version() + "\n");
+                // Step names contain ':', which properties files would otherwise read as the separator.
+                for (var e : sorted.entrySet()) out.write(e.getKey().replace(":", "\\:") + "=" + e.getValue() + "\n");
+            }
+            report("perf", "baseline written to " + baselineFile);
+        }
+    }
+
+    // Warms the kernel up, then keeps the fastest of at least PERF_MIN_RUNS timed runs.
+    private static double throughput(Operations.Operation op, BufferedImage input) {
+        long warmUntil = System.nanoTime() + PERF_WARMUP_NANOS;
+        do { run(op, input); } while (System.nanoTime() < warmUntil);
+        long best = Long.MAX_VALUE, stop = System.nanoTime() + PERF_MEASURE_NANOS;
+        for (int runs = 0; runs < PERF_MIN_RUNS || System.nanoTime() < stop; runs++) best = Math.min(best, run(op, input));
+        return input.getWidth() * (double) input.getHeight() / best * 1e3;
+    }
+
+    private static long run(Operations.Operation op, BufferedImage input) {
+        long t0 = System.nanoTime();
+        BufferedImage out = op.apply(input);
+        long took = System.nanoTime() - t0;
+        if (out != input) BufferPool.shared().release(out);
+        return took;
+    }
+
+    // === Reporting ===
+    private void check(String suite, String what, String problem) {
+        checks++;
+        if (problem == null) return;
+        failures++;
+        report(suite, "FAIL " + what + ": " + problem);
+    }
+
+    private static void report(String suite, String message) {
+        System.out.println("[" + suite + "] " + message);
+    }
+}
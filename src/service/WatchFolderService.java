@@ -0,0 +1,229 @@
+// === Watch-Folder Ingest (Headless Pipeline with Memory Back-Pressure) ===
+package service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import processing.Operations;
+import processing.Pipeline;
+import util.ImageIOUtils;
+
+public final class WatchFolderService implements AutoCloseable {
+
+    // Decoded source, ARGB working copy, result and one intermediate per image in flight.
+    private static final int COPIES_PER_IMAGE = 4;
+    private static final long POLL_MILLIS = 250;
+    private static final long REPORT_SECONDS = 10;
+    private static final int LATENCY_WINDOW = 256;
+
+    private record Seen(long size, long modified, long stableSince, long firstSeen) {}
+    private record Version(long size, long modified) {}
+
+    private final Path input, output;
+    private final Operations.Operation pipeline;
+    private final String format;
+    private final long settleMillis;
+    private final int memoryPermits;            // KiB
+    private final Semaphore memory;
+
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final Map<Path, Seen> pending = new ConcurrentHashMap<>();
+    private final Map<Path, Version> processed = new ConcurrentHashMap<>();
+    private final Set<Path> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger waiting = new AtomicInteger(), running = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong(), failed = new AtomicLong();
+    private final long[] latencies = new long[LATENCY_WINDOW];
+    private long latencyCount;
+
+    public WatchFolderService(Path input, Path output, Operations.Operation pipeline, String format,
+                              long memoryBudgetBytes, long settleMillis) {
+        if (input.toAbsolutePath().normalize().equals(output.toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("Output directory must differ from the watched directory");
+        }
+        this.input = input;
+        this.output = output;
+        this.pipeline = pipeline;
+        this.format = format;
+        this.settleMillis = settleMillis;
+        this.memoryPermits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, memoryBudgetBytes >> 10));
+        this.memory = new Semaphore(memoryPermits, true);
+    }
+
+    // === Command Line ===
+    // --watch <input> <output> [--pipeline spec] [--format png|jpg] [--memory-mb N] [--settle-ms N]
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: --watch <input-dir> <output-dir> [--pipeline spec] [--format png|jpg]"
+                    + " [--memory-mb N] [--settle-ms N]");
+            return;
+        }
+        String spec = "", format = null;
+        long memoryMb = Runtime.getRuntime().maxMemory() / 2 >> 20, settle = 1000;
+        for (int i = 2; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "--pipeline" -> spec = args[i + 1];
+                case "--format" -> format = args[i + 1].toLowerCase(Locale.ROOT);
+                case "--memory-mb" -> memoryMb = Long.parseLong(args[i + 1]);
+                case "--settle-ms" -> settle = Long.parseLong(args[i + 1]);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        try (var service = new WatchFolderService(Path.of(args[0]), Path.of(args[1]), Pipeline.parse(spec),
+                format, memoryMb << 20, settle)) {
+            service.run();
+        }
+    }
+
+    // === Watch Loop ===
+    public void run() throws IOException, InterruptedException {
+        Files.createDirectories(output);
+        try (WatchService watcher = input.getFileSystem().newWatchService()) {
+            input.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            timer.scheduleWithFixedDelay(guarded("promote", this::promoteSettled), POLL_MILLIS, POLL_MILLIS, TimeUnit.MILLISECONDS);
+            timer.scheduleAtFixedRate(guarded("report", this::report), REPORT_SECONDS, REPORT_SECONDS, TimeUnit.SECONDS);
+            log("watching " + input + " -> " + output + " (budget " + (memoryPermits >> 10) + " MB)");
+            rescan();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watcher.take();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) rescan();
+                    else if (!(event.context() instanceof Path name)) continue;
+                    else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) forget(input.resolve(name));
+                    else note(input.resolve(name));
+                }
+                if (!key.reset()) break;
+            }
+        }
+    }
+
+    // Also the catch-up after an overflow, when delete events may have been lost.
+    private void rescan() throws IOException {
+        processed.keySet().removeIf(file -> !Files.exists(file));
+        try (var files = Files.list(input)) { files.forEach(this::note); }
+    }
+
+    // processed only remembers files that still exist, so a long-running watcher does not grow without bound.
+    private void forget(Path file) {
+        pending.remove(file);
+        processed.remove(file);
+    }
+
+    // An exception escaping a scheduled task cancels all its later runs, leaving the service up but idle.
+    private static Runnable guarded(String name, Runnable task) {
+        return () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                log(name + " failed: " + e);
+            }
+        };
+    }
+
+    // Records a sighting; the settle timer restarts whenever size or modification time moves.
+    private void note(Path file) {
+        if (!ImageIOUtils.isReadableImageName(file.getFileName().toString())) return;
+        try {
+            var attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) return;
+            long now = System.currentTimeMillis(), size = attrs.size(), modified = attrs.lastModifiedTime().toMillis();
+            pending.merge(file, new Seen(size, modified, now, now), (old, seen) ->
+                    old.size() == size && old.modified() == modified ? old : new Seen(size, modified, now, old.firstSeen()));
+        } catch (IOException ignored) {
+            // Vanished between the event and the stat.
+        }
+    }
+
+    // Hands files whose size and timestamp have held still for the settle period to a worker,
+    // skipping versions that were already processed or are still in flight.
+    private void promoteSettled() {
+        long now = System.currentTimeMillis();
+        for (var entry : pending.entrySet()) {
+            Path file = entry.getKey();
+            note(file);
+            Seen seen = pending.get(file);
+            if (seen == null || now - seen.stableSince() < settleMillis || seen.size() == 0) continue;
+            if (!Files.exists(file)) { pending.remove(file); continue; }
+            if (!inFlight.add(file)) continue;
+            pending.remove(file);
+            var version = new Version(seen.size(), seen.modified());
+            if (version.equals(processed.get(file))) { inFlight.remove(file); continue; }
+            try {
+                workers.submit(() -> process(file, version, seen.firstSeen()));
+            } catch (RejectedExecutionException e) {
+                inFlight.remove(file);
+                throw e;
+            }
+        }
+    }
+
+    // === Worker ===
+    private void process(Path file, Version version, long firstSeen) {
+        int permits = permitsFor(file);
+        try {
+            waiting.incrementAndGet();
+            try { memory.acquire(permits); } finally { waiting.decrementAndGet(); }
+            running.incrementAndGet();
+            try {
+                ImageJobs.run(file, pipeline, ImageJobs.target(output, file, format));
+                processed.put(file, version);
+                if (!Files.exists(file)) processed.remove(file);     // deleted while it was being processed
+                completed.incrementAndGet();
+                recordLatency(System.currentTimeMillis() - firstSeen);
+            } finally {
+                running.decrementAndGet();
+                memory.release(permits);
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log("failed " + file.getFileName() + ": " + e.getMessage());
+        } finally {
+            inFlight.remove(file);
+        }
+    }
+
+    // Estimated from the header so oversized images queue before anything is decoded.
+    private int permitsFor(Path file) {
+        long bytes = ImageIOUtils.readDimensions(file.toFile())
+                .map(d -> (long) d.width * d.height * 4 * COPIES_PER_IMAGE)
+                .orElseGet(() -> file.toFile().length() * COPIES_PER_IMAGE);
+        return (int) Math.max(1, Math.min(memoryPermits, bytes >> 10));
+    }
+
+    // === Status ===
+    private synchronized void recordLatency(long millis) {
+        latencies[(int) (latencyCount++ % LATENCY_WINDOW)] = millis;
+    }
+
+    private void report() {
+        long[] recent;
+        synchronized (this) { recent = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_WINDOW)); }
+        Arrays.sort(recent);
+        String latency = recent.length == 0 ? "—" : "avg " + Arrays.stream(recent).sum() / recent.length
+                + " ms, p95 " + recent[Math.min(recent.length - 1, (int) (recent.length * 0.95))] + " ms";
+        log("queue " + pending.size() + ", waiting for memory " + waiting.get() + ", running " + running.get()
+                + ", done " + completed.get() + ", failed " + failed.get() + ", latency " + latency
+                + ", memory free " + (memory.availablePermits() >> 10) + "/" + (memoryPermits >> 10) + " MB");
+    }
+
+    private static void log(String message) {
+        System.out.println(LocalTime.now().truncatedTo(ChronoUnit.SECONDS) + " [ingest] " + message);
+    }
+
+    @Override public void close() {
+        timer.shutdownNow();
+        workers.shutdown();
+    }
+}
@@ -1,55 +1,94 @@
 // === Safe Image I/O (Open/Save PNG/JPEG) ===
 package util;
 
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Optional;
-import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 
 public final class ImageIOUtils {
     private ImageIOUtils() {}
 
+    // Scans the plugin registry and round-trips a tiny PNG and JPEG in memory, so the codecs are
+    // loaded before the first open or save instead of during it.
+    public static void preload() {
+        ImageIO.scanForPlugins();
+        ImageIO.getReaderFileSuffixes();
+        var img = new BufferedImage(8, 8, BufferedImage.TYPE_INT_RGB);
+        for (String format : new String[]{"png", "jpeg"}) {
+            try {
+                var bytes = new ByteArrayOutputStream();
+                ImageIO.write(img, format, bytes);
+                ImageIO.read(new ByteArrayInputStream(bytes.toByteArray()));
+            } catch (IOException ignored) {
+                // Only warming up; a missing codec shows up properly on real use.
+            }
+        }
+    }
+
     public static Optional<BufferedImage> readImage(File file) {
         try { return Optional.ofNullable(ImageIO.read(file)); }
         catch (Exception e) { return Optional.empty(); }
     }
 
-    public static boolean writeAuto(BufferedImage image, File file) {
+    // Reads only the header of the first image in file.
+    public static Optional<Dimension> readDimensions(File file) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            if (in == null) return Optional.empty();
+            Iterator<ImageReader> it = ImageIO.getImageReaders(in);
+            if (!it.hasNext()) return Optional.empty();
+            ImageReader r = it.next();
+            try {
+                r.setInput(in, true, true);
+                return Optional.of(new Dimension(r.getWidth(0), r.getHeight(0)));
+            } finally {
+                r.dispose();
+            }
+        } catch (Exception e) { return Optional.empty(); }
+    }
+
+    public static boolean isReadableImageName(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0 || name.startsWith(".")) return false;
+        String ext = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        for (String s : ImageIO.getReaderFileSuffixes()) if (s.equalsIgnoreCase(ext)) return true;
+        return false;
+    }
+
+    public static boolean writeAuto(RenderedImage image, File file) {
         String name = file.getName().toLowerCase(Locale.ROOT);
         if (name.endsWith(".png")) return writePng(image, file);
         if (name.endsWith(".jpg") || name.endsWith(".jpeg")) return writeJpeg(image, file, 0.92f);
         return writePng(image, ensureExtension(file, ".png"));
     }
 
-    public static boolean writePng(BufferedImage image, File file) {
-        try { return ImageIO.write(image, "png", ensureExtension(file, ".png")); }
+    // Written in the smallest lossless layout the pixels allow; see PngReduction.
+    public static boolean writePng(RenderedImage image, File file) {
+        try { return ImageIO.write(PngReduction.reduce(image), "png", ensureExtension(file, ".png")); }
         catch (Exception e) { return false; }
     }
 
-    public static boolean writeJpeg(BufferedImage image, File file, float quality) {
-        file = ensureExtension(file, ".jpg");
+    public static boolean writeJpeg(RenderedImage image, File file, float quality) {
+        return writeJpeg(image, file, JpegEncoder.Options.quality(quality)).isPresent();
+    }
+
+    // Encodes in memory (searching quality when the options ask for a size or similarity target), then writes.
+    public static Optional<JpegEncoder.Result> writeJpeg(RenderedImage image, File file, JpegEncoder.Options options) {
         try {
-            Iterator<ImageWriter> it = ImageIO.getImageWritersByFormatName("jpeg");
-            if (!it.hasNext()) return false;
-            ImageWriter w = it.next();
-            ImageWriteParam p = w.getDefaultWriteParam();
-            if (p.canWriteCompressed()) {
-                p.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                p.setCompressionQuality(quality);
-            }
-            try (var out = new FileImageOutputStream(file)) {
-                w.setOutput(out);
-                w.write(null, new IIOImage(image, null, null), p);
-                w.dispose();
-                return true;
-            }
-        } catch (Exception e) { return false; }
+            JpegEncoder.Result result = JpegEncoder.encode(image, options);
+            Files.write(ensureExtension(file, ".jpg").toPath(), result.bytes());
+            return Optional.of(result);
+        } catch (Exception e) { return Optional.empty(); }
     }
 
     private static File ensureExtension(File f, String ext) {
@@ -0,0 +1,231 @@
+// === JPEG Encoder (Subsampling, Progressive Scans, Size- and Similarity-Targeted Quality) ===
+package util;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.RenderedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+public final class JpegEncoder {
+    private JpegEncoder() {}
+
+    // Luma sampling relative to chroma: 4:4:4 keeps full chroma, 4:2:0 halves it both ways.
+    public enum Subsampling {
+        YUV444(1, 1, "4:4:4"), YUV422(2, 1, "4:2:2"), YUV420(2, 2, "4:2:0");
+        final int h, v;
+        private final String label;
+        Subsampling(int h, int v, String label) { this.h = h; this.v = v; this.label = label; }
+        @Override public String toString() { return label; }
+    }
+
+    // Fixed quality, the highest quality that fits in a byte budget, or the lowest quality whose decoded
+    // result reaches a luma SSIM against the source.
+    public sealed interface Target permits Quality, MaxBytes, MinSimilarity {}
+    public record Quality(float value) implements Target {}
+    public record MaxBytes(long bytes) implements Target {}
+    public record MinSimilarity(double ssim) implements Target {}
+
+    public record Options(Target target, Subsampling subsampling, boolean progressive) {
+        public static Options quality(float quality) {
+            return new Options(new Quality(quality), Subsampling.YUV420, false);
+        }
+    }
+
+    // met is false when no quality satisfied the target and bytes is the closest attempt.
+    public record Result(byte[] bytes, float quality, boolean met, int encodes, long millis) {}
+
+    private static final float MIN_QUALITY = 0.05f, MAX_QUALITY = 1.0f;
+    private static final float RESOLUTION = 0.01f;
+    private static final int MAX_ROUNDS = 5;
+
+    private record Probe(float quality, byte[] bytes, boolean ok) {}
+
+    public static Result encode(RenderedImage image, Options options) throws IOException {
+        long start = System.nanoTime();
+        BufferedImage rgb = opaqueRgb(image);
+        if (options.target() instanceof Quality q) {
+            byte[] bytes = encodeOnce(rgb, q.value(), options);
+            return new Result(bytes, q.value(), true, 1, (System.nanoTime() - start) / 1_000_000);
+        }
+
+        // Acceptable qualities form [MIN, q*] for a byte budget and [q*, MAX] for a similarity floor.
+        boolean okBelow = options.target() instanceof MaxBytes;
+        float[] luma = options.target() instanceof MinSimilarity ? luma(rgb) : null;
+        int k = Math.max(2, Math.min(6, Runtime.getRuntime().availableProcessors()));
+        float lo = MIN_QUALITY, hi = MAX_QUALITY;
+        Probe best = null, nearest = null;
+        int encodes = 0;
+
+        // Each round encodes k qualities at once and keeps only the bracket around the boundary.
+        for (int round = 0; round < MAX_ROUNDS && hi - lo > RESOLUTION; round++) {
+            float from = lo, to = hi;
+            boolean first = round == 0;
+            float[] qs = new float[k];
+            for (int i = 0; i < k; i++) qs[i] = first ? from + (to - from) * i / (k - 1) : from + (to - from) * (i + 1) / (k + 1);
+            List<Probe> probes = IntStream.range(0, k).parallel().mapToObj(i -> {
+                try {
+                    byte[] bytes = encodeOnce(rgb, qs[i], options);
+                    return new Probe(qs[i], bytes, accepts(options.target(), bytes, rgb, luma));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).sorted(Comparator.comparingDouble(Probe::quality)).toList();
+            encodes += k;
+
+            for (Probe p : probes) {
+                if (okBelow && p.ok()) { best = p; lo = p.quality(); }
+                if (!okBelow && !p.ok()) lo = p.quality();
+            }
+            for (Probe p : probes.reversed()) {
+                if (okBelow && !p.ok() && p.quality() > lo) hi = p.quality();
+                if (!okBelow && p.ok()) { best = p; hi = p.quality(); }
+            }
+            if (nearest == null) nearest = okBelow ? probes.getFirst() : probes.getLast();
+            if (first && best == null) break;     // even the end of the range misses the target
+            if (lo >= hi) break;                  // encoder noise broke monotonicity; keep what we have
+        }
+        Probe chosen = best != null ? best : nearest;
+        return new Result(chosen.bytes(), chosen.quality(), best != null, encodes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private static boolean accepts(Target target, byte[] bytes, BufferedImage rgb, float[] luma) throws IOException {
+        return switch (target) {
+            case MaxBytes m -> bytes.length <= m.bytes();
+            case MinSimilarity s -> ssim(luma, luma(ImageIO.read(new ByteArrayInputStream(bytes))), rgb.getWidth(), rgb.getHeight()) >= s.ssim();
+            case Quality _ -> true;
+        };
+    }
+
+    // === Single Encode ===
+    static byte[] encodeOnce(BufferedImage rgb, float quality, Options options) throws IOException {
+        Iterator<ImageWriter> it = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!it.hasNext()) throw new IOException("No JPEG writer");
+        ImageWriter writer = it.next();
+        try {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            if (options.progressive()) param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            if (param instanceof JPEGImageWriteParam jpeg) jpeg.setOptimizeHuffmanTables(true);
+            IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(rgb), param);
+            setSubsampling(metadata, options.subsampling());
+
+            var bytes = new ByteArrayOutputStream(Math.max(1024, rgb.getWidth() * rgb.getHeight() / 4));
+            try (var out = new MemoryCacheImageOutputStream(bytes)) {
+                writer.setOutput(out);
+                writer.write(null, new IIOImage(rgb, null, metadata), param);
+            }
+            return bytes.toByteArray();
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    // The luma component's sampling factors decide the chroma subsampling; chroma stays at 1x1.
+    private static void setSubsampling(IIOMetadata metadata, Subsampling s) throws IOException {
+        String format = "javax_imageio_jpeg_image_1.0";
+        Node tree = metadata.getAsTree(format);
+        Node sof = find(tree, "sof");
+        if (sof == null) return;
+        for (Node c = sof.getFirstChild(); c != null; c = c.getNextSibling()) {
+            if (!(c instanceof Element spec) || !c.getNodeName().equals("componentSpec")) continue;
+            boolean luma = spec.getAttribute("componentId").equals("1");
+            spec.setAttribute("HsamplingFactor", String.valueOf(luma ? s.h : 1));
+            spec.setAttribute("VsamplingFactor", String.valueOf(luma ? s.v : 1));
+        }
+        metadata.setFromTree(format, tree);
+    }
+
+    private static Node find(Node node, String name) {
+        if (node.getNodeName().equals(name)) return node;
+        for (Node c = node.getFirstChild(); c != null; c = c.getNextSibling()) {
+            Node hit = find(c, name);
+            if (hit != null) return hit;
+        }
+        return null;
+    }
+
+    // JPEG has no alpha channel; flatten onto white instead of letting the writer reject the image.
+    public static BufferedImage opaqueRgb(RenderedImage image) {
+        if (image instanceof BufferedImage b && b.getType() == BufferedImage.TYPE_INT_RGB) return b;
+        BufferedImage rgb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, image.getWidth(), image.getHeight());
+        g.drawRenderedImage(image, new AffineTransform());
+        g.dispose();
+        return rgb;
+    }
+
+    // === Similarity ===
+    private static float[] luma(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        int[] px = img.getType() == BufferedImage.TYPE_INT_RGB
+                ? ((DataBufferInt) img.getRaster().getDataBuffer()).getData() : img.getRGB(0, 0, w, h, null, 0, w);
+        float[] y = new float[w * h];
+        for (int i = 0; i < y.length; i++) {
+            int p = px[i];
+            y[i] = 0.299f * ((p >> 16) & 0xFF) + 0.587f * ((p >> 8) & 0xFF) + 0.114f * (p & 0xFF);
+        }
+        return y;
+    }
+
+    // Mean SSIM over 8x8 luma windows at a stride of 4. Windows aligned to the DCT grid cannot see blocking,
+    // so every other one straddles a block edge, where JPEG's blocking artifacts show. An image smaller
+    // than a window in either direction is measured with one window of its own size.
+    private static final int WINDOW = 8, STRIDE = 4;
+
+    static double ssim(float[] a, float[] b, int w, int h) {
+        int ww = Math.min(WINDOW, w), wh = Math.min(WINDOW, h);
+        int[] xs = starts(w, ww), ys = starts(h, wh);
+        double total = IntStream.range(0, ys.length).parallel().mapToDouble(row -> {
+            double sum = 0;
+            for (int x : xs) sum += window(a, b, w, x, ys[row], ww, wh);
+            return sum;
+        }).sum();
+        return total / ((double) xs.length * ys.length);
+    }
+
+    // Window origins every STRIDE pixels, plus one flush with the far edge so the last pixels are covered.
+    private static int[] starts(int size, int window) {
+        int last = size - window, n = last / STRIDE + 1;
+        boolean tail = last % STRIDE != 0;
+        int[] out = new int[n + (tail ? 1 : 0)];
+        for (int i = 0; i < n; i++) out[i] = i * STRIDE;
+        if (tail) out[n] = last;
+        return out;
+    }
+
+    private static double window(float[] a, float[] b, int w, int x0, int y0, int ww, int wh) {
+        final double c1 = 6.5025, c2 = 58.5225;       // (0.01*255)^2, (0.03*255)^2
+        double sa = 0, sb = 0, saa = 0, sbb = 0, sab = 0;
+        for (int y = y0; y < y0 + wh; y++) {
+            for (int i = y * w + x0, end = i + ww; i < end; i++) {
+                sa += a[i]; sb += b[i]; saa += a[i] * a[i]; sbb += b[i] * b[i]; sab += a[i] * b[i];
+            }
+        }
+        double n = ww * wh, ma = sa / n, mb = sb / n;
+        double va = saa / n - ma * ma, vb = sbb / n - mb * mb, cov = sab / n - ma * mb;
+        return (2 * ma * mb + c1) * (2 * cov + c2) / ((ma * ma + mb * mb + c1) * (va + vb + c2));
+    }
+}
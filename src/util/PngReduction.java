@@ -0,0 +1,131 @@
+// === PNG Reduction (Lossless Palette, Gray Bit-Depth and Alpha Removal) ===
+package util;
+
+import java.awt.AlphaComposite;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+// Picks the smallest PNG layout that still holds every pixel exactly: gray at 1, 2 or 4 bits,
+// a 1/2/4/8-bit palette (with alpha) for up to 256 colours, RGB when fully opaque, else ARGB.
+// Less raw data also means less to deflate, so encoding gets faster as well as smaller.
+final class PngReduction {
+    private PngReduction() {}
+
+    private static final int MAX_PALETTE = 256;
+
+    static RenderedImage reduce(RenderedImage image) {
+        int w = image.getWidth(), h = image.getHeight();
+        int[] argb = pixels(image);
+
+        boolean opaque = true, gray = true;
+        int grayBits = 1;
+        var palette = new ColorTable();
+        for (int p : argb) {
+            int a = p >>> 24, r = (p >> 16) & 0xFF, g = (p >> 8) & 0xFF, b = p & 0xFF;
+            if (a != 0xFF) opaque = false;
+            if (r != g || g != b) gray = false;
+            else grayBits = Math.max(grayBits, grayBitsFor(r));
+            palette.add(p);
+            if (!opaque && !gray && palette.size() > MAX_PALETTE) return image;
+        }
+
+        // 8-bit gray goes through the palette instead: Java's own PNG reader treats 8-bit gray as linear
+        // and would brighten it on the way back in.
+        if (gray && opaque && grayBits < 8) return grayImage(argb, w, h, grayBits);
+        if (palette.size() <= MAX_PALETTE) return paletteImage(argb, w, h, palette, opaque);
+        if (opaque) {
+            var rgb = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            System.arraycopy(argb, 0, ((DataBufferInt) rgb.getRaster().getDataBuffer()).getData(), 0, argb.length);
+            return rgb;
+        }
+        return image;
+    }
+
+    // Fewest bits at which an 8-bit gray level survives the scale down and back up unchanged.
+    private static int grayBitsFor(int v) {
+        if (v % 255 == 0) return 1;
+        if (v % 85 == 0) return 2;
+        if (v % 17 == 0) return 4;
+        return 8;
+    }
+
+    private static RenderedImage grayImage(int[] argb, int w, int h, int bits) {
+        // A full gray ramp as the palette makes the PNG writer emit a gray image at this depth.
+        int levels = 1 << bits, step = 255 / (levels - 1);
+        byte[] ramp = new byte[levels];
+        for (int i = 0; i < levels; i++) ramp[i] = (byte) (i * step);
+        var img = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY, new IndexColorModel(bits, levels, ramp, ramp, ramp));
+        WritableRaster raster = img.getRaster();
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) row[x] = (argb[y * w + x] & 0xFF) / step;
+            raster.setPixels(0, y, w, 1, row);
+        }
+        return img;
+    }
+
+    private static RenderedImage paletteImage(int[] argb, int w, int h, ColorTable palette, boolean opaque) {
+        int n = palette.size();
+        int bits = n <= 2 ? 1 : n <= 4 ? 2 : n <= 16 ? 4 : 8;
+        int[] colors = palette.colors();
+        var model = new IndexColorModel(bits, n, colors, 0, !opaque, -1, DataBuffer.TYPE_BYTE);
+        var img = bits == 8
+                ? new BufferedImage(w, h, BufferedImage.TYPE_BYTE_INDEXED, model)
+                : new BufferedImage(w, h, BufferedImage.TYPE_BYTE_BINARY, model);
+        WritableRaster raster = img.getRaster();
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) row[x] = palette.indexOf(argb[y * w + x]);
+            raster.setPixels(0, y, w, 1, row);
+        }
+        return img;
+    }
+
+    private static int[] pixels(RenderedImage image) {
+        if (image instanceof BufferedImage b && b.getType() == BufferedImage.TYPE_INT_ARGB
+                && b.getRaster().getDataBuffer() instanceof DataBufferInt db && db.getOffset() == 0
+                && b.getRaster().getSampleModelTranslateX() == 0 && b.getRaster().getSampleModelTranslateY() == 0
+                && db.getSize() == b.getWidth() * b.getHeight()) {
+            return db.getData();
+        }
+        var argb = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        var g = argb.createGraphics();
+        g.setComposite(AlphaComposite.Src);
+        g.drawRenderedImage(image, new AffineTransform());
+        g.dispose();
+        return ((DataBufferInt) argb.getRaster().getDataBuffer()).getData();
+    }
+
+    // Open-addressed set of up to MAX_PALETTE + 1 colours; once it overflows it stops tracking.
+    private static final class ColorTable {
+        private final int[] keys = new int[1024];
+        private final short[] slots = new short[1024];          // index + 1, 0 when empty
+        private final int[] order = new int[MAX_PALETTE + 1];
+        private int size;
+
+        void add(int color) {
+            if (size > MAX_PALETTE) return;
+            int i = slot(color);
+            if (slots[i] != 0) return;
+            keys[i] = color;
+            order[size] = color;
+            slots[i] = (short) ++size;
+        }
+
+        int indexOf(int color) { return slots[slot(color)] - 1; }
+        int size() { return size; }
+        int[] colors() { return Arrays.copyOf(order, size); }
+
+        private int slot(int color) {
+            int i = (color * 0x9E3779B1) >>> 22;
+            while (slots[i] != 0 && keys[i] != color) i = (i + 1) & 1023;
+            return i;
+        }
+    }
+}